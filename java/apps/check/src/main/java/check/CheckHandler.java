@@ -3,38 +3,57 @@ package check;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse.BatchItemFailure;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
 import com.google.gson.Gson;
 
 import check.daos.CustomObject;
+import check.tracing.SqsRecordTracer;
+import common.codec.StorageCodec;
+import common.deadline.Deadline;
+import common.faults.FaultInjector;
+import common.resilience.ResiliencePolicy;
+import common.tracing.StageTracer;
+import common.tracing.StageTracer.Stage;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
-import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.SdkSystemSetting;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.http.ContentStreamProvider;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
-public class CheckHandler implements RequestHandler<SQSEvent, Void> {
+public class CheckHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
 
   static {
     // https://docs.aws.amazon.com/de_de/sdk-for-java/latest/developer-guide/security-java-tls.html
@@ -45,151 +64,330 @@ public class CheckHandler implements RequestHandler<SQSEvent, Void> {
 
   private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaCheckEvent";
 
+  private static String CHECK_MODE;
+  private static StorageCodec STORAGE_CODEC;
+
+  // In metadata mode, the check state is kept as object metadata which is
+  // replaced by a server-side copy of the object onto itself instead of
+  // rewriting the JSON body.
+  private static final String CHECK_MODE_METADATA = "metadata";
+  private static final String CUSTOM_OBJECT_METADATA_IS_CHECKED = "is-checked";
+
+  // Time which is kept free at the end of the invocation for ending the span
+  // and flushing the telemetry. It is parsed once per container.
+  private static final long DEADLINE_RESERVE_MILLIS = Deadline.getReserveMillisFromEnv();
+  private static boolean DEADLINE_STOP_ON_EXHAUSTION;
+
   private Gson gson = new Gson();
-  private Random random = new Random(System.currentTimeMillis());
 
-  private final static S3Client s3Client;
+  // Traces the stages of every record with the same tracer
+  private final static StageTracer stageTracer = StageTracer.fromEnv("check");
 
-  static {
-    final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
-    final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+  // Traces every record in its own span which is linked to the update that
+  // has sent it
+  private final static SqsRecordTracer sqsRecordTracer = SqsRecordTracer.create("check");
+
+  // The S3 client is built on its first use instead of in the static
+  // initializer so that the SDK is only loaded once it is needed
+  private static class S3ClientHolder {
+
+    private static final S3Client s3Client;
+
+    static {
+      final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
+      final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+
+      // Wrap the client with the retry and circuit breaker policy
+      final ResiliencePolicy resiliencePolicy = ResiliencePolicy.fromEnv();
+
+      // Inject faults into the client if enabled
+      final FaultInjector faultInjector = FaultInjector.fromEnv("s3");
+
+      s3Client = S3Client.builder()
+          .httpClient(UrlConnectionHttpClient.builder().build())
+          .region(awsRegion)
+          .overrideConfiguration(faultInjector.applyTo(resiliencePolicy.getClientOverrideConfiguration("s3")))
+          .build();
+    }
+  }
 
-    s3Client = S3Client.builder()
-        .httpClient(UrlConnectionHttpClient.builder().build())
-        .region(awsRegion)
-        .build();
+  private static S3Client getS3Client() {
+    return S3ClientHolder.s3Client;
   }
 
   @Override
-  public Void handleRequest(
+  public SQSBatchResponse handleRequest(
       SQSEvent input,
       Context context) {
 
+    // Parse environment variables
+    parseEnvVars();
+
+    // Start the latency budget of this invocation
+    Deadline deadline = new Deadline(context, DEADLINE_RESERVE_MILLIS);
+
+    List<BatchItemFailure> batchItemFailures = new ArrayList<>();
+
     // Check if there are any records
     if (input.getRecords().isEmpty()) {
-      logger.info("No records are found in S3 event.");
-      return null;
+      logger.info("No records are found in SQS event.");
+      return new SQSBatchResponse(batchItemFailures);
     }
 
-    // Parse SQS message
-    Map<String, String> message = parseSqsMessage(input);
-    String bucketName = message.get("bucket");
-    String keyName = message.get("key");
+    boolean isRetryPending = false;
+    int unprocessedRecords = 0;
+    for (SQSMessage record : input.getRecords()) {
+
+      // The queue is FIFO, so the records after one which is retried are
+      // retried as well to keep their order
+      if (isRetryPending) {
+        batchItemFailures.add(new BatchItemFailure(record.getMessageId()));
+        continue;
+      }
+
+      // Do not start new records if the budget is nearly exhausted and
+      // report them as failures so that only they are retried
+      if (DEADLINE_STOP_ON_EXHAUSTION && deadline.isExhausted()) {
+        batchItemFailures.add(new BatchItemFailure(record.getMessageId()));
+        unprocessedRecords++;
+        continue;
+      }
+
+      isRetryPending = !sqsRecordTracer.trace(record, () -> checkRecord(context, deadline, record));
+      if (isRetryPending)
+        batchItemFailures.add(new BatchItemFailure(record.getMessageId()));
+    }
 
-    try {
+    if (isRetryPending)
+      logger.error("Checking custom objects is interrupted! Records to retry: " + batchItemFailures.size());
+
+    // Enrich span with the records which are not processed
+    if (unprocessedRecords > 0) {
+      logger.error("Latency budget is exhausted! Unprocessed records: " + unprocessedRecords);
+      enrichSpanWithDeadlineExhaustion(deadline, unprocessedRecords);
+    }
+
+    return new SQSBatchResponse(batchItemFailures);
+  }
+
+  // Returns whether the record is done with, either checked or dropped, or
+  // is to be retried
+  private boolean checkRecord(
+      Context context,
+      Deadline deadline,
+      SQSMessage record) {
 
-      // Create the custom object from input bucket
-      String customObjectAsString = getCustomObjectFromS3(bucketName, keyName);
+    String bucketName = null;
+    String keyName = null;
 
-      // Update custom object
-      String customObjectCheckedAsString = checkCustomObject(customObjectAsString);
+    // Every failure of the record is reported as a failed event. Only the
+    // ones which can pass on a later attempt are retried, a malformed message
+    // or a missing object is dropped because it would fail again.
+    try {
 
-      // Store the custom object in S3
-      storeCustomObjectInS3(bucketName, keyName, customObjectCheckedAsString);
+      // Parse SQS message
+      Map<String, String> message = stageTracer.trace(Stage.PARSE, () -> parseSqsMessage(record));
+      bucketName = message.get("bucket");
+      keyName = message.get("key");
+
+      // The names are captured by the stages
+      String messageBucketName = bucketName;
+      String messageKeyName = keyName;
+
+      if (CHECK_MODE_METADATA.equals(CHECK_MODE)) {
+        // Mark the custom object as checked in its metadata
+        stageTracer.trace(Stage.STORE,
+            () -> markCustomObjectInS3AsChecked(deadline, messageBucketName, messageKeyName));
+      } else {
+        // Create the custom object from input bucket
+        CustomObject customObject = stageTracer.trace(Stage.FETCH,
+            () -> getCustomObjectFromS3(deadline, messageBucketName, messageKeyName));
+
+        // Update custom object
+        String customObjectCheckedAsString = stageTracer.trace(Stage.TRANSFORM,
+            () -> checkCustomObject(customObject));
+
+        // Store the custom object in S3
+        stageTracer.trace(Stage.STORE,
+            () -> storeCustomObjectInS3(deadline, messageBucketName, messageKeyName, customObjectCheckedAsString));
+      }
 
       // Enrich span with success
       enrichSpanWithSuccess(context, bucketName, keyName);
 
       logger.info("Checking custom object is succeeded.");
-      return null;
+      return true;
     } catch (Exception e) {
-      logger.error("Checking custom object is failed!: " + e);
+      boolean isRetryable = isRetryable(e);
+      logger.error("Checking custom object is failed!" + (isRetryable ? " It will be retried." : "") + ": " + e);
 
       // Enrich span with failure
       enrichSpanWithFailure(context, e, bucketName, keyName);
+      return !isRetryable;
+    }
+  }
 
-      return null;
+  // Throttling, server errors and the failures on the client side, like I/O
+  // errors, timeouts or the rejections of an open circuit breaker, can pass
+  // on a later attempt
+  private static boolean isRetryable(
+      Throwable e) {
+
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SdkServiceException) {
+        SdkServiceException serviceException = (SdkServiceException) cause;
+        return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+      }
+      if (cause instanceof SdkClientException)
+        return true;
     }
+    return false;
+  }
+
+  private void parseEnvVars() {
+    logger.info("Parsing env vars...");
+    CHECK_MODE = System.getenv("CHECK_MODE");
+    STORAGE_CODEC = StorageCodec.fromName(System.getenv("STORAGE_CODEC"));
+
+    DEADLINE_STOP_ON_EXHAUSTION = Boolean.parseBoolean(System.getenv("DEADLINE_STOP_ON_EXHAUSTION"));
+    logger.info("Parsing env vars is succeeded.");
   }
 
   @SuppressWarnings("unchecked")
   private Map<String, String> parseSqsMessage(
-      SQSEvent input) {
+      SQSMessage record) {
 
     logger.info("Parsing SQS message...");
 
     // Get bucket name and object key
-    SQSMessage record = input.getRecords().get(0);
     String messageAsString = record.getBody();
 
     // Parse message
     Map<String, String> message = new HashMap<String, String>();
     message = gson.fromJson(messageAsString, message.getClass());
+    if (message == null || message.get("bucket") == null || message.get("key") == null)
+      throw new IllegalArgumentException("SQS message [" + record.getMessageId() + "] has no bucket or key.");
 
     logger.info("Parsing SQS message is succeeded.");
     return message;
   }
 
-  private String getCustomObjectFromS3(
+  private CustomObject getCustomObjectFromS3(
+      Deadline deadline,
       String bucketName,
       String keyName) throws Exception {
 
     logger.info("Getting custom object from the S3...");
 
-    // Cause error?
-    if (causeError())
-      keyName = "wrong-key-name";
-
     try {
       GetObjectRequest getObjectRequest = GetObjectRequest
           .builder()
           .bucket(bucketName)
           .key(keyName)
+          .overrideConfiguration(deadline.getOverrideConfiguration())
           .build();
 
-      // Get custom object as bytes
-      ResponseBytes<GetObjectResponse> responseBytes = s3Client.getObjectAsBytes(getObjectRequest);
-      byte[] customObjectAsBytes = responseBytes.asByteArray();
-
-      logger.info("Getting custom object from the S3 is succedeed.");
+      // Get custom object as stream and parse it while decoding it with the
+      // codec which it is stored with
+      try (ResponseInputStream<GetObjectResponse> responseStream = getS3Client().getObject(getObjectRequest)) {
+        StorageCodec codec = StorageCodec.fromContentEncoding(responseStream.response().contentEncoding());
+        Reader reader = new InputStreamReader(codec.decode(responseStream), StandardCharsets.UTF_8);
+        CustomObject customObject = gson.fromJson(reader, CustomObject.class);
 
-      // Parse as string and return
-      return new String(customObjectAsBytes, StandardCharsets.UTF_8);
+        logger.info("Getting custom object from the S3 is succedeed.");
+        return customObject;
+      }
     } catch (Exception e) {
       String msg = "Getting custom object from the S3 is failed.";
       logger.error(msg);
-      throw new Exception(msg + ": " + e.getMessage());
+      throw new Exception(msg + ": " + e.getMessage(), e);
     }
   }
 
   private String checkCustomObject(
-      String customObjectAsString) {
-    CustomObject customObject = gson.fromJson(customObjectAsString, CustomObject.class);
+      CustomObject customObject) {
     customObject.setIsChecked(true);
 
     return gson.toJson(customObject);
   }
 
   private void storeCustomObjectInS3(
+      Deadline deadline,
       String bucketName,
       String keyName,
-      String customObjectString) {
+      String customObjectString) throws IOException {
 
     logger.info("Checking custom object...");
 
     // Get byte array stream of string
     ByteArrayOutputStream jsonByteStream = getByteArrayOutputStream(customObjectString);
 
-    // Prepare an InputStream from the ByteArrayOutputStream
-    InputStream fis = new ByteArrayInputStream(jsonByteStream.toByteArray());
+    // Encode with the codec of this function
+    byte[] customObjectAsBytes = STORAGE_CODEC.encode(jsonByteStream.toByteArray());
 
     // Put file into S3
-    s3Client.putObject(
+    getS3Client().putObject(
         PutObjectRequest
             .builder()
             .bucket(bucketName)
             .key(keyName)
+            .contentEncoding(STORAGE_CODEC.getContentEncoding())
+            .overrideConfiguration(deadline.getOverrideConfiguration())
             .build(),
         RequestBody.fromContentProvider(new ContentStreamProvider() {
           @Override
           public InputStream newStream() {
-            return fis;
+            // A new stream is needed for every retry of the request
+            return new ByteArrayInputStream(customObjectAsBytes);
           }
-        }, jsonByteStream.toByteArray().length, "application/json"));
+        }, customObjectAsBytes.length, "application/json"));
 
     logger.info("Checking custom object is succedeed.");
   }
 
+  private void markCustomObjectInS3AsChecked(
+      Deadline deadline,
+      String bucketName,
+      String keyName) throws Exception {
+
+    logger.info("Marking custom object in S3 as checked...");
+
+    try {
+      // Get the current metadata without downloading the object
+      HeadObjectResponse headObjectResponse = getS3Client().headObject(
+          HeadObjectRequest
+              .builder()
+              .bucket(bucketName)
+              .key(keyName)
+              .overrideConfiguration(deadline.getOverrideConfiguration())
+              .build());
+
+      Map<String, String> metadata = new HashMap<>(headObjectResponse.metadata());
+      metadata.put(CUSTOM_OBJECT_METADATA_IS_CHECKED, "true");
+
+      // Copy the object onto itself server-side with the replaced metadata
+      getS3Client().copyObject(
+          CopyObjectRequest
+              .builder()
+              .sourceBucket(bucketName)
+              .sourceKey(keyName)
+              .destinationBucket(bucketName)
+              .destinationKey(keyName)
+              .metadataDirective(MetadataDirective.REPLACE)
+              .metadata(metadata)
+              .contentType(headObjectResponse.contentType())
+              .contentEncoding(headObjectResponse.contentEncoding())
+              .overrideConfiguration(deadline.getOverrideConfiguration())
+              .build());
+
+      logger.info("Marking custom object in S3 as checked is succeeded.");
+    } catch (Exception e) {
+      String msg = "Marking custom object in S3 as checked is failed.";
+      logger.error(msg);
+      throw new Exception(msg + ": " + e.getMessage(), e);
+    }
+  }
+
   private ByteArrayOutputStream getByteArrayOutputStream(
       String data) throws RuntimeException {
 
@@ -206,12 +404,6 @@ public class CheckHandler implements RequestHandler<SQSEvent, Void> {
     return byteArrayOutputStream;
   }
 
-  private boolean causeError() {
-    // Cause an error if the random number is 1
-    int n = random.nextInt(15);
-    return n == 1;
-  }
-
   private void enrichSpanWithSuccess(
       Context context,
       String bucketName,
@@ -248,4 +440,14 @@ public class CheckHandler implements RequestHandler<SQSEvent, Void> {
 
     span.addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
   }
+
+  private void enrichSpanWithDeadlineExhaustion(
+      Deadline deadline,
+      int unprocessedRecords) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.booleanKey("deadline.exhausted"), true);
+    span.setAttribute(AttributeKey.longKey("deadline.remaining.ms"), deadline.getRemainingMillis());
+    span.setAttribute(AttributeKey.longKey("deadline.unprocessed.records"), (long) unprocessedRecords);
+  }
 }
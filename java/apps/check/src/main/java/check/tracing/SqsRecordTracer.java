@@ -0,0 +1,154 @@
+package check.tracing;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.MessageAttribute;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+
+import common.tracing.StageTracer.StageCallable;
+import common.tracing.StageTracer.StageRunnable;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+
+public class SqsRecordTracer {
+
+  private static final Logger logger = LoggerFactory.getLogger(SqsRecordTracer.class);
+
+  // Time at which the message is sent in epoch millis, set by the producer
+  private static final String SENT_TIMESTAMP_MESSAGE_ATTRIBUTE = "sent.timestamp";
+
+  // Time at which SQS received the message, which is used if the producer
+  // did not set the sent timestamp
+  private static final String SENT_TIMESTAMP_SYSTEM_ATTRIBUTE = "SentTimestamp";
+
+  private static final AttributeKey<String> MESSAGING_SYSTEM = AttributeKey.stringKey("messaging.system");
+  private static final AttributeKey<String> MESSAGING_OPERATION = AttributeKey.stringKey("messaging.operation");
+  private static final AttributeKey<String> MESSAGING_MESSAGE_ID = AttributeKey.stringKey("messaging.message.id");
+  private static final AttributeKey<Long> QUEUE_WAIT_MS = AttributeKey.longKey("queue.wait.ms");
+
+  private static final TextMapGetter<Map<String, MessageAttribute>> GETTER = new TextMapGetter<>() {
+    @Override
+    public Iterable<String> keys(
+        Map<String, MessageAttribute> carrier) {
+      return carrier.keySet();
+    }
+
+    @Override
+    public String get(
+        Map<String, MessageAttribute> carrier,
+        String key) {
+      MessageAttribute messageAttribute = carrier != null ? carrier.get(key) : null;
+      return messageAttribute != null ? messageAttribute.getStringValue() : null;
+    }
+  };
+
+  private final String spanName;
+  private final Tracer tracer;
+  private final LongHistogram queueWaitTime;
+
+  private SqsRecordTracer(
+      String instrumentationName) {
+    this.spanName = instrumentationName + ".record";
+    this.tracer = GlobalOpenTelemetry.getTracer(instrumentationName);
+    this.queueWaitTime = GlobalOpenTelemetry.getMeter(instrumentationName)
+        .histogramBuilder("queue.wait.time")
+        .setDescription("Time between sending a message to the queue and starting to process it.")
+        .setUnit("ms")
+        .ofLongs()
+        .build();
+  }
+
+  public static SqsRecordTracer create(
+      String instrumentationName) {
+    return new SqsRecordTracer(instrumentationName);
+  }
+
+  public <T, E extends Exception> T trace(
+      SQSMessage record,
+      StageCallable<T, E> callable) throws E {
+
+    Long queueWaitMillis = getQueueWaitMillis(record);
+
+    SpanBuilder spanBuilder = this.tracer.spanBuilder(this.spanName)
+        .setSpanKind(SpanKind.CONSUMER)
+        .setAttribute(MESSAGING_SYSTEM, "aws_sqs")
+        .setAttribute(MESSAGING_OPERATION, "process")
+        .setAttribute(MESSAGING_MESSAGE_ID, record.getMessageId());
+
+    // Link the span of the update which has sent the message. A link is used
+    // instead of a parent since a batch can hold messages of many traces.
+    SpanContext producerSpanContext = extractSpanContext(record);
+    if (producerSpanContext.isValid())
+      spanBuilder.addLink(producerSpanContext);
+
+    if (queueWaitMillis != null) {
+      spanBuilder.setAttribute(QUEUE_WAIT_MS, queueWaitMillis);
+      this.queueWaitTime.record(queueWaitMillis);
+    }
+
+    Span span = spanBuilder.startSpan();
+    try (Scope scope = span.makeCurrent()) {
+      return callable.call();
+    } catch (Exception e) {
+      span.setStatus(StatusCode.ERROR, e.getMessage());
+      span.recordException(e);
+      throw e;
+    } finally {
+      span.end();
+    }
+  }
+
+  public <E extends Exception> void trace(
+      SQSMessage record,
+      StageRunnable<E> runnable) throws E {
+
+    trace(record, () -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  private SpanContext extractSpanContext(
+      SQSMessage record) {
+
+    Map<String, MessageAttribute> messageAttributes = record.getMessageAttributes() != null
+        ? record.getMessageAttributes()
+        : Collections.emptyMap();
+
+    Context context = W3CTraceContextPropagator.getInstance().extract(Context.root(), messageAttributes, GETTER);
+    return Span.fromContext(context).getSpanContext();
+  }
+
+  private Long getQueueWaitMillis(
+      SQSMessage record) {
+
+    String sentTimestamp = GETTER.get(record.getMessageAttributes(), SENT_TIMESTAMP_MESSAGE_ATTRIBUTE);
+    if (sentTimestamp == null && record.getAttributes() != null)
+      sentTimestamp = record.getAttributes().get(SENT_TIMESTAMP_SYSTEM_ATTRIBUTE);
+
+    if (sentTimestamp == null)
+      return null;
+
+    try {
+      return Math.max(0, System.currentTimeMillis() - Long.parseLong(sentTimestamp));
+    } catch (NumberFormatException e) {
+      logger.error("Sent timestamp of the message is invalid: " + sentTimestamp);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package check;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+
+import check.daos.CustomObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.EventData;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// The check marks the custom objects as checked in their metadata, which is
+// set in the "metadata" execution of the surefire configuration.
+public class CheckHandlerMetadataTest {
+
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaCheckEvent";
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CheckHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CheckHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void marksCustomObjectsAsCheckedInMetadata() {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    StoredObject outputObject = CustomObjects.of(new CustomObject("test", true, false))
+        .withMetadata(Map.of("is-updated", "true"));
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, outputObject);
+    FakeContext context = new FakeContext("check");
+
+    SQSBatchResponse response = telemetry.invoke(context,
+        () -> handler.handleRequest(Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, keyNames), context));
+    assertTrue(response.getBatchItemFailures().isEmpty());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(count, events.size());
+    for (EventData event : events)
+      assertEquals(true, event.getAttributes().get(AttributeKey.booleanKey("is.successful")));
+
+    // The payload is copied as it is, only the metadata is replaced
+    for (String keyName : keyNames) {
+      StoredObject object = fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyName);
+      assertArrayEquals(outputObject.getContent(), object.getContent());
+      assertEquals(outputObject.getContentEncoding(), object.getContentEncoding());
+      assertEquals(Map.of("is-updated", "true", "is-checked", "true"), object.getMetadata());
+    }
+
+    // The payload never transits the Lambda
+    assertEquals(count, fakeAws.s3().getCallCount("HeadObject"));
+    assertEquals(count, fakeAws.s3().getCallCount("CopyObject"));
+    assertEquals(0, fakeAws.s3().getCallCount("GetObject"));
+    assertEquals(0, fakeAws.s3().getCallCount("PutObject"));
+  }
+}
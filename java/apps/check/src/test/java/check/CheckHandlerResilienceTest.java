@@ -0,0 +1,125 @@
+package check;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse.BatchItemFailure;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+
+import check.daos.CustomObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.EventData;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+
+// Every GetObject fails with a server error, which is set together with the
+// circuit breaker and without retries in the "resilience" execution of the
+// surefire configuration. The failed records are left to the retries of the
+// queue.
+public class CheckHandlerResilienceTest {
+
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaCheckEvent";
+
+  // CIRCUIT_BREAKER_FAILURE_THRESHOLD and CIRCUIT_BREAKER_OPEN_MILLIS
+  private static final int FAILURE_THRESHOLD = 3;
+  private static final long OPEN_MILLIS = 1000;
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CheckHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CheckHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  // The circuit breaker is shared by the invocations of the JVM, so its whole
+  // cycle is tested at once
+  @Test
+  public void opensCircuitBreakerAndLetsSingleTrialThrough() throws InterruptedException {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", true, false)));
+
+    // A server error is retried by the queue, so the failed record and the
+    // ones after it are reported as failures to keep their order
+    for (int i = 0; i < FAILURE_THRESHOLD; i++)
+      invokeAndAssertRetried(keyNames);
+
+    assertEquals(FAILURE_THRESHOLD, telemetry.getEvents("FaultInjected").size());
+    assertEquals(List.of("CLOSED>OPEN"), getTransitions());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(FAILURE_THRESHOLD, events.size());
+    for (EventData event : events)
+      assertEquals(false, event.getAttributes().get(AttributeKey.booleanKey("is.successful")));
+
+    // The open breaker rejects the record without sending it, which is
+    // retried as well
+    telemetry.reset();
+    invokeAndAssertRetried(keyNames);
+    assertEquals(1, telemetry.getEvents("CircuitBreakerRejection").size());
+    assertEquals(0, fakeAws.s3().getCallCount());
+
+    telemetry.reset();
+    Thread.sleep(OPEN_MILLIS);
+
+    invokeAndAssertRetried(keyNames);
+
+    // A single trial is let through once the breaker is half open, and it
+    // opens the breaker again when it fails
+    assertEquals(1, telemetry.getEvents("FaultInjected").size());
+    assertEquals(0, telemetry.getEvents("CircuitBreakerRejection").size());
+    assertEquals(List.of("OPEN>HALF_OPEN", "HALF_OPEN>OPEN"), getTransitions());
+    assertTrue(telemetry.getEvents("RetryDecision").isEmpty());
+  }
+
+  // Every record of the batch has to be reported as failure, in the order of
+  // the batch
+  private void invokeAndAssertRetried(
+      List<String> keyNames) {
+    SQSEvent event = Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, keyNames);
+    FakeContext context = new FakeContext("check");
+
+    SQSBatchResponse response = telemetry.invoke(context, () -> handler.handleRequest(event, context));
+
+    List<String> messageIds = new ArrayList<>();
+    for (SQSMessage record : event.getRecords())
+      messageIds.add(record.getMessageId());
+    List<String> failedMessageIds = new ArrayList<>();
+    for (BatchItemFailure failure : response.getBatchItemFailures())
+      failedMessageIds.add(failure.getItemIdentifier());
+    assertEquals(messageIds, failedMessageIds);
+  }
+
+  private List<String> getTransitions() {
+    List<String> transitions = new ArrayList<>();
+    for (EventData event : telemetry.getEvents("CircuitBreakerTransition"))
+      transitions.add(event.getAttributes().get(AttributeKey.stringKey("circuit.breaker.state.from"))
+          + ">" + event.getAttributes().get(AttributeKey.stringKey("circuit.breaker.state.to")));
+    return transitions;
+  }
+}
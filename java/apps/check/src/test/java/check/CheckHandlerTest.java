@@ -0,0 +1,233 @@
+package check;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import check.daos.CustomObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import testkit.BudgetTest;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.ContentEncodings;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// The environment of the handler is set in the surefire configuration, where
+// every storage codec is tested in its own execution
+public class CheckHandlerTest extends BudgetTest<SQSBatchResponse> {
+
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaCheckEvent";
+
+  // Fetching and storing the custom object
+  private static final int MAX_S3_CALLS_PER_RECORD = 2;
+
+  // Bytes which the handler thread may allocate per record
+  private static final long MAX_ALLOCATED_BYTES_PER_RECORD = 2 * 1024 * 1024;
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CheckHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CheckHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void checksCustomObjectsAndEmitsEvents() {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", true, false)));
+    FakeContext context = new FakeContext("check");
+
+    SQSBatchResponse response = invoke(Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, keyNames), context);
+    assertTrue(response.getBatchItemFailures().isEmpty());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(count, events.size());
+
+    Set<String> checkedKeyNames = new HashSet<>();
+    for (EventData event : events) {
+      Attributes attributes = event.getAttributes();
+      assertEquals(true, attributes.get(AttributeKey.booleanKey("is.successful")));
+      assertEquals(OUTPUT_S3_BUCKET_NAME, attributes.get(AttributeKey.stringKey("bucket.id")));
+      assertEquals(context.getAwsRequestId(), attributes.get(AttributeKey.stringKey("aws.request.id")));
+      checkedKeyNames.add(attributes.get(AttributeKey.stringKey("key.name")));
+    }
+    assertEquals(new HashSet<>(keyNames), checkedKeyNames);
+
+    for (String keyName : keyNames) {
+      StoredObject object = fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyName);
+      assertEquals(ContentEncodings.ofStorageCodec(), object.getContentEncoding());
+      assertTrue(CustomObjects.decode(object, CustomObject.class).getIsChecked());
+    }
+  }
+
+  @Test
+  public void tracesEveryRecordAsConsumerSpan() {
+    int count = 5;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", true, false)));
+    FakeContext context = new FakeContext("check");
+
+    invoke(Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, keyNames), context);
+
+    // The events are added to the span of their record
+    List<SpanData> recordSpans = telemetry.getFinishedSpans("check.record");
+    assertEquals(count, recordSpans.size());
+    for (SpanData recordSpan : recordSpans) {
+      assertEquals(SpanKind.CONSUMER, recordSpan.getKind());
+      assertEquals(1, recordSpan.getEvents().stream()
+          .filter(event -> event.getName().equals(CUSTOM_OTEL_SPAN_EVENT_NAME))
+          .count());
+      assertTrue(recordSpan.getAttributes().get(AttributeKey.longKey("queue.wait.ms")) >= 0);
+    }
+  }
+
+  @Test
+  public void reportsMissingCustomObjectAsFailedEvent() {
+    FakeContext context = new FakeContext("check");
+
+    SQSBatchResponse response = invoke(Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, List.of("missing")), context);
+
+    // The record is processed, so it is not retried
+    assertTrue(response.getBatchItemFailures().isEmpty());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(1, events.size());
+    assertEquals(false, events.get(0).getAttributes().get(AttributeKey.booleanKey("is.successful")));
+    assertEquals("missing", events.get(0).getAttributes().get(AttributeKey.stringKey("key.name")));
+  }
+
+  @Test
+  public void reportsMalformedMessageAsFailedEventAndContinues() {
+    List<String> keyNames = Events.keyNames("1697000000000", 1);
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", true, false)));
+    FakeContext context = new FakeContext("check");
+
+    SQSEvent event = Events.sqsEvent(List.of(
+        "not json",
+        "{\"bucket\":\"" + OUTPUT_S3_BUCKET_NAME + "\"}",
+        "{\"bucket\":\"" + OUTPUT_S3_BUCKET_NAME + "\",\"key\":\"" + keyNames.get(0) + "\"}"));
+    SQSBatchResponse response = invoke(event, context);
+
+    // The malformed records would fail again, so they are not retried
+    assertTrue(response.getBatchItemFailures().isEmpty());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(3, events.size());
+    assertEquals(2, events.stream()
+        .filter(e -> Boolean.FALSE.equals(e.getAttributes().get(AttributeKey.booleanKey("is.successful"))))
+        .count());
+    assertTrue(CustomObjects.decode(fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyNames.get(0)), CustomObject.class).getIsChecked());
+  }
+
+  @Test
+  public void reportsRecordsAsFailuresIfDeadlineIsExhausted() {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", true, false)));
+
+    // Less than the reserve of the deadline is left
+    FakeContext context = new FakeContext("check").withRemainingTimeInMillis(500);
+
+    SQSBatchResponse response = invoke(Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, keyNames), context);
+
+    // Only the unprocessed records are retried
+    assertEquals(count, response.getBatchItemFailures().size());
+    assertEquals(0, fakeAws.s3().getCallCount());
+    assertTrue(telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME).isEmpty());
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    assertEquals((long) count, invocationSpan.getAttributes().get(AttributeKey.longKey("deadline.unprocessed.records")));
+  }
+
+  @Override
+  protected String getFunctionName() {
+    return "check";
+  }
+
+  @Override
+  protected Supplier<SQSBatchResponse> prepareInvocation(
+      List<String> keyNames,
+      FakeContext context) {
+
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", true, false)));
+    SQSEvent event = Events.sqsEvent(OUTPUT_S3_BUCKET_NAME, keyNames);
+    return () -> invoke(event, context);
+  }
+
+  @Override
+  protected void assertProcessed(
+      SQSBatchResponse response,
+      List<String> keyNames) {
+    assertTrue(response.getBatchItemFailures().isEmpty());
+
+    // Every custom object is marked as checked, either in its body or in its
+    // metadata, depending on the mode of the check
+    boolean isMetadataMode = "metadata".equals(System.getenv("CHECK_MODE"));
+    for (String keyName : keyNames) {
+      StoredObject object = fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyName);
+      if (isMetadataMode)
+        assertEquals("true", object.getMetadata().get("is-checked"), keyName + " is not checked.");
+      else
+        assertTrue(CustomObjects.decode(object, CustomObject.class).getIsChecked(), keyName + " is not checked.");
+    }
+  }
+
+  @Override
+  protected int getCallBudgetItemCount() {
+    return 50;
+  }
+
+  @Override
+  protected int getMaxS3Calls(
+      int itemCount) {
+    return itemCount * MAX_S3_CALLS_PER_RECORD;
+  }
+
+  @Override
+  protected int getAllocationBudgetItemCount() {
+    return 20;
+  }
+
+  @Override
+  protected long getMaxAllocatedBytesPerItem() {
+    return MAX_ALLOCATED_BYTES_PER_RECORD;
+  }
+
+  private SQSBatchResponse invoke(
+      SQSEvent event,
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(event, context));
+  }
+}
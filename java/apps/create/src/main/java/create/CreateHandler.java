@@ -4,9 +4,19 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +26,15 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.google.gson.Gson;
-
+import com.google.gson.JsonParseException;
+
+import common.codec.StorageCodec;
+import common.deadline.Deadline;
+import common.faults.FaultInjector;
+import common.resilience.ResiliencePolicy;
+import common.tracing.StageTracer;
+import common.tracing.StageTracer.Stage;
+import create.daos.BulkCreateSummary;
 import create.daos.CustomObject;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
@@ -42,17 +60,69 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
   private static String INPUT_S3_BUCKET_NAME;
   private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaCreateEvent";
 
-  private final static S3Client s3Client;
+  // Time which is kept free at the end of the invocation for ending the span
+  // and flushing the telemetry. It is parsed once per container.
+  private static final long DEADLINE_RESERVE_MILLIS = Deadline.getReserveMillisFromEnv();
+
+  // Bulk requests create "count" custom objects from the item template in
+  // the body and store them with bounded parallelism.
+  private static final String BULK_COUNT_QUERY_PARAMETER = "count";
+  private static final String DEFAULT_ITEM = "test";
+  private static final int DEFAULT_BULK_CREATE_MAX_COUNT = 1000;
+  private static final int DEFAULT_BULK_CREATE_PARALLELISM = 8;
+
+  // The bulk limits and the codec are parsed once per container. Invalid
+  // values fall back to the defaults, so that a misconfigured function does
+  // not reject the requests as invalid.
+  private static final int BULK_CREATE_MAX_COUNT =
+      getPositiveIntFromEnv("BULK_CREATE_MAX_COUNT", DEFAULT_BULK_CREATE_MAX_COUNT);
+  private static final int BULK_CREATE_PARALLELISM =
+      getPositiveIntFromEnv("BULK_CREATE_PARALLELISM", DEFAULT_BULK_CREATE_PARALLELISM);
+
+  private static ExecutorService bulkCreateExecutor;
+
+  // Codec which the custom objects are stored with
+  private static final StorageCodec STORAGE_CODEC = getStorageCodecFromEnv();
+
+  // The keys of the stored custom objects are written into a manifest per
+  // invocation, grouped by minute, so that the delete can purge them
+  // without listing the input bucket.
+  private static final String MANIFEST_KEY_PREFIX = "manifests/";
+  private static final DateTimeFormatter MANIFEST_MINUTE_FORMATTER = DateTimeFormatter
+      .ofPattern("yyyyMMddHHmm")
+      .withZone(ZoneOffset.UTC);
+  private static String MANIFEST_S3_BUCKET_NAME;
+
   private Gson gson = new Gson();
-  private Random random = new Random(System.currentTimeMillis());
 
-  static {
-    final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
-    final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
-    s3Client = S3Client.builder()
-        .httpClient(UrlConnectionHttpClient.builder().build())
-        .region(awsRegion)
-        .build();
+  // Traces the stages of the invocation
+  private final static StageTracer stageTracer = StageTracer.fromEnv("create");
+
+  // The S3 client is built on its first use instead of in the static
+  // initializer so that the SDK is only loaded once it is needed
+  private static class S3ClientHolder {
+
+    private static final S3Client s3Client;
+
+    static {
+      final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
+      final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+      // Wrap the client with the retry and circuit breaker policy
+      final ResiliencePolicy resiliencePolicy = ResiliencePolicy.fromEnv();
+
+      // Inject faults into the client if enabled
+      final FaultInjector faultInjector = FaultInjector.fromEnv("s3");
+
+      s3Client = S3Client.builder()
+          .httpClient(UrlConnectionHttpClient.builder().build())
+          .region(awsRegion)
+          .overrideConfiguration(faultInjector.applyTo(resiliencePolicy.getClientOverrideConfiguration("s3")))
+          .build();
+    }
+  }
+
+  private static S3Client getS3Client() {
+    return S3ClientHolder.s3Client;
   }
 
   @Override
@@ -64,19 +134,32 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
       // Parse environment variables
       parseEnvVars();
 
-      // Create the custom object
-      CustomObject customObject = createCustomObject();
+      // Start the latency budget of this invocation
+      Deadline deadline = new Deadline(context, DEADLINE_RESERVE_MILLIS);
+
+      // Create many custom objects if a count is requested
+      Integer count = stageTracer.trace(Stage.PARSE, () -> getBulkCount(input));
+      if (count != null)
+        return handleBulkRequest(input, context, deadline, count);
+
+      // Create the custom object and stringify it
+      String json = stageTracer.trace(Stage.TRANSFORM,
+          () -> getStringOfCustomObject(createCustomObject(DEFAULT_ITEM)));
 
-      // Stringify custom object
-      String json = getStringOfCustomObject(customObject);
+      // Add the key to the manifest
+      String keyName = String.valueOf(System.currentTimeMillis());
+      stageTracer.trace(Stage.STORE, () -> storeManifestInS3(context, deadline, List.of(keyName)));
 
       // Store the custom object in S3
-      storeObjectInS3(json);
+      stageTracer.trace(Stage.STORE, () -> storeObjectInS3(deadline, keyName, json));
 
       // Enrich span with success
-      enrichSpanWithSuccess(context);
+      enrichSpanWithSuccess(context, keyName);
 
       return createResponse(200, json);
+    } catch (InvalidRequestException e) {
+      logger.error("Request is invalid! Exception: " + e);
+      return createResponse(400, e.getMessage());
     } catch (Exception e) {
       logger.error("Storing custom object into S3 is failed! Exception: " + e);
 
@@ -90,12 +173,185 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
   private void parseEnvVars() {
     logger.info("Parsing environment variables...");
     INPUT_S3_BUCKET_NAME = System.getenv("INPUT_S3_BUCKET_NAME");
+
+    MANIFEST_S3_BUCKET_NAME = System.getenv("MANIFEST_S3_BUCKET_NAME");
     logger.info("Parsing environment variables is succeeded.");
   }
 
-  private CustomObject createCustomObject() {
+  private static int getPositiveIntFromEnv(
+      String name,
+      int defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) return defaultValue;
+
+    try {
+      int parsed = Integer.parseInt(value.trim());
+      if (parsed > 0) return parsed;
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+
+    logger.warn("Invalid " + name + ": " + value + ". Using " + defaultValue + ".");
+    return defaultValue;
+  }
+
+  private static StorageCodec getStorageCodecFromEnv() {
+    String value = System.getenv("STORAGE_CODEC");
+    try {
+      return StorageCodec.fromName(value);
+    } catch (IllegalArgumentException e) {
+      logger.warn("Invalid STORAGE_CODEC: " + value + ". Using " + StorageCodec.NONE + ".");
+      return StorageCodec.NONE;
+    }
+  }
+
+  private Integer getBulkCount(
+      APIGatewayProxyRequestEvent input) throws InvalidRequestException {
+
+    Map<String, String> queryStringParameters = input.getQueryStringParameters();
+    if (queryStringParameters == null || !queryStringParameters.containsKey(BULK_COUNT_QUERY_PARAMETER))
+      return null;
+
+    int count;
+    try {
+      count = Integer.parseInt(queryStringParameters.get(BULK_COUNT_QUERY_PARAMETER));
+    } catch (NumberFormatException e) {
+      throw new InvalidRequestException("Count must be a number.");
+    }
+
+    if (count < 1 || count > BULK_CREATE_MAX_COUNT)
+      throw new InvalidRequestException("Count must be between 1 and " + BULK_CREATE_MAX_COUNT + ".");
+
+    return count;
+  }
+
+  private String getItemOfTemplate(
+      APIGatewayProxyRequestEvent input) throws InvalidRequestException {
+
+    // The body is an optional custom object template such as {"item":"..."}
+    String body = input.getBody();
+    if (body == null || body.isBlank())
+      return DEFAULT_ITEM;
+
+    CustomObject template;
+    try {
+      template = gson.fromJson(body, CustomObject.class);
+    } catch (JsonParseException e) {
+      throw new InvalidRequestException("Body must be a custom object template.");
+    }
+
+    return template != null && template.getItem() != null ? template.getItem() : DEFAULT_ITEM;
+  }
+
+  private APIGatewayProxyResponseEvent handleBulkRequest(
+      APIGatewayProxyRequestEvent input,
+      Context context,
+      Deadline deadline,
+      int count) throws Exception {
+
+    logger.info("Storing " + count + " custom objects into S3...");
+
+    String item = stageTracer.trace(Stage.PARSE, () -> getItemOfTemplate(input));
+
+    // All of the custom objects are created from the same template so that
+    // it is serialized and encoded only once
+    byte[] customObjectAsBytes = stageTracer.trace(Stage.TRANSFORM, () -> {
+      String json = getStringOfCustomObject(createCustomObject(item));
+      return STORAGE_CODEC.encode(json.getBytes(StandardCharsets.UTF_8));
+    });
+
+    String keyPrefix = String.valueOf(System.currentTimeMillis());
+
+    // Add the keys to the manifest. The keys of the custom objects which
+    // are not written are retained by the delete until they are too old to
+    // be requeued. If the budget is exhausted already, none of them is
+    // written and no manifest is needed.
+    List<String> keyNames = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      keyNames.add(keyPrefix + "-" + i);
+    if (!deadline.isExhausted())
+      stageTracer.trace(Stage.STORE, () -> storeManifestInS3(context, deadline, keyNames));
+
+    // Store the custom objects with bounded parallelism
+    List<String> failedKeys = stageTracer.trace(Stage.STORE,
+        () -> storeBulkObjectsInS3(deadline, keyPrefix, count, customObjectAsBytes));
+
+    BulkCreateSummary summary = new BulkCreateSummary(keyPrefix, count, count - failedKeys.size(), failedKeys);
+
+    logger.info("Storing custom objects into S3 is finished. Written: " + summary.getWritten() + "/" + count);
+
+    // Enrich span with the result of the bulk request and of every object
+    enrichSpanWithBulkResult(summary);
+    Set<String> failedKeySet = new HashSet<>(failedKeys);
+    for (String keyName : keyNames)
+      if (!failedKeySet.contains(keyName))
+        enrichSpanWithSuccess(context, keyName);
+    for (String keyName : failedKeys)
+      enrichSpanWithBulkObjectFailure(context, keyName);
+
+    return createResponse(failedKeys.isEmpty() ? 200 : 207, gson.toJson(summary));
+  }
+
+  private List<String> storeBulkObjectsInS3(
+      Deadline deadline,
+      String keyPrefix,
+      int count,
+      byte[] customObjectAsBytes) throws Exception {
+
+    // The uploads run on the pool threads, so the context of the invocation
+    // is passed along for the events of the resilience layer and the SDK spans
+    io.opentelemetry.context.Context parentContext = io.opentelemetry.context.Context.current();
+
+    ExecutorService executor = getBulkCreateExecutor();
+    List<Future<Boolean>> results = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String keyName = keyPrefix + "-" + i;
+      results.add(executor.submit(parentContext.wrap(() -> storeBulkObjectInS3(deadline, keyName, customObjectAsBytes))));
+    }
+
+    List<String> failedKeys = new ArrayList<>();
+    for (int i = 0; i < count; i++)
+      if (!results.get(i).get())
+        failedKeys.add(keyPrefix + "-" + i);
+
+    return failedKeys;
+  }
+
+  private boolean storeBulkObjectInS3(
+      Deadline deadline,
+      String keyName,
+      byte[] customObjectAsBytes) {
+
+    // Do not start new uploads if the budget is nearly exhausted
+    if (deadline.isExhausted())
+      return false;
+
+    try {
+      putCustomObjectInS3(deadline, keyName, customObjectAsBytes);
+      return true;
+    } catch (Exception e) {
+      logger.error("Storing custom object [" + keyName + "] into S3 is failed: " + e.getMessage());
+      return false;
+    }
+  }
+
+  private static synchronized ExecutorService getBulkCreateExecutor() {
+
+    // The executor is kept across the invocations of the same container
+    if (bulkCreateExecutor == null) {
+      bulkCreateExecutor = Executors.newFixedThreadPool(BULK_CREATE_PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "bulk-create");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return bulkCreateExecutor;
+  }
+
+  private CustomObject createCustomObject(
+      String item) {
     return new CustomObject(
-        "test",
+        item,
         false,
         false);
   }
@@ -107,6 +363,8 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
   }
 
   private void storeObjectInS3(
+      Deadline deadline,
+      String keyName,
       String customObjectString) throws Exception {
 
     logger.info("Storing custom object into S3...");
@@ -114,32 +372,74 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
     // Get byte array stream of string
     ByteArrayOutputStream jsonByteStream = getByteArrayOutputStream(customObjectString);
 
-    // Prepare an InputStream from the ByteArrayOutputStream
-    InputStream fis = new ByteArrayInputStream(jsonByteStream.toByteArray());
+    // Put file into S3
+    try {
+      putCustomObjectInS3(deadline, keyName, STORAGE_CODEC.encode(jsonByteStream.toByteArray()));
 
-    // Cause error?
-    String bucketName = String.valueOf(INPUT_S3_BUCKET_NAME);
-    if (causeError())
-      bucketName = "wrong-bucket-name";
+      logger.info("Storing custom object into S3 is succeeded.");
+    } catch (Exception e) {
+      String msg = "Storing custom object into S3 is failed";
+      logger.error(msg);
+      throw new Exception(msg + ": " + e.getMessage());
+    }
+  }
 
-    // Put file into S3
+  private void putCustomObjectInS3(
+      Deadline deadline,
+      String keyName,
+      byte[] customObjectAsBytes) {
+
+    getS3Client().putObject(
+        PutObjectRequest
+            .builder()
+            .bucket(String.valueOf(INPUT_S3_BUCKET_NAME))
+            .key(keyName)
+            .contentEncoding(STORAGE_CODEC.getContentEncoding())
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build(),
+        RequestBody.fromContentProvider(new ContentStreamProvider() {
+          @Override
+          public InputStream newStream() {
+            // A new stream is needed for every retry of the request
+            return new ByteArrayInputStream(customObjectAsBytes);
+          }
+        }, customObjectAsBytes.length, "application/json"));
+  }
+
+  private void storeManifestInS3(
+      Context context,
+      Deadline deadline,
+      List<String> keyNames) throws Exception {
+
+    // Manifests are only written if the delete consumes them
+    if (MANIFEST_S3_BUCKET_NAME == null || keyNames.isEmpty())
+      return;
+
+    logger.info("Storing manifest of " + keyNames.size() + " custom objects into S3...");
+
+    // S3 objects cannot be appended to, so every invocation writes its own
+    // manifest which is sorted into the minute it is written in
+    String manifestKeyName = MANIFEST_KEY_PREFIX
+        + MANIFEST_MINUTE_FORMATTER.format(Instant.now()) + "/"
+        + context.getAwsRequestId();
+
+    // The manifest is written before the custom objects so that none of
+    // them is stored without being listed. The write is retried by the
+    // resilience policy of the client and fails the request if it fails.
     try {
-      s3Client.putObject(
+      getS3Client().putObject(
           PutObjectRequest
               .builder()
-              .bucket(bucketName)
-              .key(String.valueOf(System.currentTimeMillis()))
+              .bucket(MANIFEST_S3_BUCKET_NAME)
+              .key(manifestKeyName)
+              .contentType("text/plain")
+              .overrideConfiguration(deadline.getOverrideConfiguration())
               .build(),
-          RequestBody.fromContentProvider(new ContentStreamProvider() {
-            @Override
-            public InputStream newStream() {
-              return fis;
-            }
-          }, jsonByteStream.toByteArray().length, "application/json"));
+          RequestBody.fromString(String.join("\n", keyNames)));
 
-      logger.info("Storing custom object into S3 is succeeded.");
+      logger.info("Storing manifest into S3 is succeeded.");
     } catch (Exception e) {
-      String msg = "Storing custom object into S3 is failed";
+      String msg = "Storing manifest [" + manifestKeyName + "] into S3 is failed";
       logger.error(msg);
       throw new Exception(msg + ": " + e.getMessage());
     }
@@ -161,12 +461,6 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
     return byteArrayOutputStream;
   }
 
-  private boolean causeError() {
-    // Cause an error if the random number is 1
-    int n = random.nextInt(15);
-    return n == 1;
-  }
-
   private APIGatewayProxyResponseEvent createResponse(
       int statusCode,
       String body) {
@@ -180,13 +474,15 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
   }
 
   private void enrichSpanWithSuccess(
-      Context context) {
+      Context context,
+      String keyName) {
 
     Span span = Span.current();
 
     Attributes eventAttributes = Attributes.of(
         AttributeKey.booleanKey("is.successful"), true,
         AttributeKey.stringKey("bucket.id"), INPUT_S3_BUCKET_NAME,
+        AttributeKey.stringKey("key.name"), keyName,
         AttributeKey.stringKey("aws.request.id"), context.getAwsRequestId());
 
     span.addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
@@ -209,4 +505,30 @@ public class CreateHandler implements RequestHandler<APIGatewayProxyRequestEvent
 
     span.addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
   }
+
+  // The result of the bulk request is kept in span attributes, so that only
+  // the events of the objects are counted as outcomes
+  private void enrichSpanWithBulkResult(
+      BulkCreateSummary summary) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.stringKey("key.prefix"), summary.getKeyPrefix());
+    span.setAttribute(AttributeKey.longKey("bulk.requested"), (long) summary.getRequested());
+    span.setAttribute(AttributeKey.longKey("bulk.written"), (long) summary.getWritten());
+  }
+
+  private void enrichSpanWithBulkObjectFailure(
+      Context context,
+      String keyName) {
+
+    Span span = Span.current();
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.booleanKey("is.successful"), false,
+        AttributeKey.stringKey("bucket.id"), INPUT_S3_BUCKET_NAME,
+        AttributeKey.stringKey("key.name"), keyName,
+        AttributeKey.stringKey("aws.request.id"), context.getAwsRequestId());
+
+    span.addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+  }
 }
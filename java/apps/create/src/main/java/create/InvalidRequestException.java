@@ -0,0 +1,11 @@
+package create;
+
+// The request is rejected with 400, because it is invalid. Every other
+// failure of the invocation is a server error.
+class InvalidRequestException extends Exception {
+
+  InvalidRequestException(
+      String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,40 @@
+package create.daos;
+
+import java.util.List;
+
+public class BulkCreateSummary {
+
+  // The keys of a bulk request are "<keyPrefix>-<index>" for index in
+  // [0, requested). Only the keys which are not written are listed.
+  private String keyPrefix;
+  private int requested;
+  private int written;
+  private List<String> failedKeys;
+
+  public BulkCreateSummary(
+      String keyPrefix,
+      int requested,
+      int written,
+      List<String> failedKeys) {
+    this.keyPrefix = keyPrefix;
+    this.requested = requested;
+    this.written = written;
+    this.failedKeys = failedKeys;
+  }
+
+  public String getKeyPrefix() {
+    return this.keyPrefix;
+  }
+
+  public int getRequested() {
+    return this.requested;
+  }
+
+  public int getWritten() {
+    return this.written;
+  }
+
+  public List<String> getFailedKeys() {
+    return this.failedKeys;
+  }
+}
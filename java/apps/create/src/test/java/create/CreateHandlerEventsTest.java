@@ -0,0 +1,100 @@
+package create;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.trace.data.EventData;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+
+// The stages are traced as span events, which is set in the "events"
+// execution of the surefire configuration.
+public class CreateHandlerEventsTest {
+
+  private static final String MANIFEST_S3_BUCKET_NAME = "manifest";
+  private static final String STAGE_EVENT_NAME = "Stage";
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CreateHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CreateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void tracesStagesAsEventsOfInvocationSpan() {
+    FakeContext context = new FakeContext("create");
+
+    invoke(Events.apiGatewayRequest(), context);
+
+    for (String spanName : List.of("create.parse", "create.transform", "create.store"))
+      assertTrue(telemetry.getFinishedSpans(spanName).isEmpty(), spanName + " is traced as span.");
+
+    // The manifest and the custom object are stored in a stage each
+    List<EventData> events = telemetry.getInvocationSpan(context).getEvents().stream()
+        .filter(event -> event.getName().equals(STAGE_EVENT_NAME))
+        .toList();
+    assertEquals(4, events.size());
+
+    Set<String> stageNames = new HashSet<>();
+    for (EventData event : events) {
+      Attributes attributes = event.getAttributes();
+      stageNames.add(attributes.get(AttributeKey.stringKey("stage.name")));
+      assertEquals(true, attributes.get(AttributeKey.booleanKey("stage.is.successful")));
+      assertTrue(attributes.get(AttributeKey.longKey("stage.duration.ms")) >= 0);
+
+      // The outcomes of the custom events are not counted twice
+      assertNull(attributes.get(AttributeKey.booleanKey("is.successful")));
+    }
+    assertEquals(Set.of("parse", "transform", "store"), stageNames);
+  }
+
+  @Test
+  public void tracesFailedStageAsEvent() {
+    fakeAws.s3().denyAccess(MANIFEST_S3_BUCKET_NAME);
+    FakeContext context = new FakeContext("create");
+
+    invoke(Events.apiGatewayRequest(), context);
+
+    // The store of the manifest fails, and the custom object is not stored
+    List<EventData> failedEvents = telemetry.getEvents(STAGE_EVENT_NAME).stream()
+        .filter(event -> Boolean.FALSE.equals(event.getAttributes().get(AttributeKey.booleanKey("stage.is.successful"))))
+        .toList();
+    assertEquals(1, failedEvents.size());
+    assertEquals("store", failedEvents.get(0).getAttributes().get(AttributeKey.stringKey("stage.name")));
+  }
+
+  private APIGatewayProxyResponseEvent invoke(
+      APIGatewayProxyRequestEvent request,
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(request, context));
+  }
+}
@@ -0,0 +1,80 @@
+package create;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.Gson;
+
+import create.daos.BulkCreateSummary;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.EventData;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+
+// The fault rates of the deployed function together with its resilience
+// layer, which are set in the "fault-rates" execution of the surefire
+// configuration. The injected errors are not retried, so they still show up
+// as failed custom objects.
+public class CreateHandlerFaultRatesTest {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CreateHandler handler;
+
+  private final Gson gson = new Gson();
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CreateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void failsCustomObjectsAtDeployedErrorRate() {
+    int count = 300;
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyResponseEvent response = telemetry.invoke(context,
+        () -> handler.handleRequest(Events.apiGatewayBulkRequest(count, "bulk"), context));
+    assertEquals(207, response.getStatusCode());
+
+    // Every injected error fails its custom object and is not retried
+    List<EventData> faultEvents = telemetry.getEvents("FaultInjected");
+    assertFalse(faultEvents.isEmpty());
+    for (EventData event : faultEvents)
+      assertEquals("ERROR", event.getAttributes().get(AttributeKey.stringKey("fault.type")));
+
+    BulkCreateSummary summary = gson.fromJson(response.getBody(), BulkCreateSummary.class);
+    assertEquals(faultEvents.size(), summary.getFailedKeys().size());
+    assertEquals(count - faultEvents.size(), summary.getWritten());
+    assertEquals(summary.getWritten(), fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).size());
+
+    for (EventData event : telemetry.getEvents("RetryDecision"))
+      assertEquals(false, event.getAttributes().get(AttributeKey.booleanKey("retry.decision")));
+
+    // Close to the deployed rate of 1 in 15
+    assertTrue(faultEvents.size() >= count / 30 && faultEvents.size() <= count / 10,
+        "Failed custom objects: " + faultEvents.size());
+  }
+}
@@ -0,0 +1,86 @@
+package create;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.Gson;
+
+import create.daos.BulkCreateSummary;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.EventData;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// Faults are injected into the uploads of the custom objects and retried by
+// the resilience layer, which is set in the "resilience" execution of the
+// surefire configuration. The manifest bucket is not affected.
+public class CreateHandlerResilienceTest {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String MANIFEST_S3_BUCKET_NAME = "manifest";
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CreateHandler handler;
+
+  private final Gson gson = new Gson();
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CreateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void retriesInjectedFaultsOfCustomObjects() {
+    int count = 100;
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyResponseEvent response = telemetry.invoke(context,
+        () -> handler.handleRequest(Events.apiGatewayBulkRequest(count, "bulk"), context));
+    assertEquals(200, response.getStatusCode());
+
+    BulkCreateSummary summary = gson.fromJson(response.getBody(), BulkCreateSummary.class);
+    assertEquals(count, summary.getWritten());
+    assertEquals(count, fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).size());
+
+    List<EventData> faultEvents = telemetry.getEvents("FaultInjected");
+    assertFalse(faultEvents.isEmpty());
+    for (EventData event : faultEvents)
+      assertEquals("PutObject", event.getAttributes().get(AttributeKey.stringKey("aws.operation")));
+
+    // Every injected fault is retried within the retry budget
+    List<EventData> retryEvents = telemetry.getEvents("RetryDecision");
+    assertEquals(faultEvents.size(), retryEvents.size());
+    for (EventData event : retryEvents)
+      assertEquals(true, event.getAttributes().get(AttributeKey.booleanKey("retry.decision")));
+
+    // The injected faults never reach S3, so every object and the manifest
+    // are sent once
+    assertEquals(count + 1, fakeAws.s3().getCallCount("PutObject"));
+
+    Map<String, StoredObject> manifests = fakeAws.s3().getObjects(MANIFEST_S3_BUCKET_NAME);
+    assertEquals(1, manifests.size());
+    assertEquals(count, manifests.values().iterator().next().getContentAsString().split("\n").length);
+  }
+}
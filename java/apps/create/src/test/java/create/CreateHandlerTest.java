@@ -0,0 +1,262 @@
+package create;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.google.gson.Gson;
+
+import create.daos.BulkCreateSummary;
+import create.daos.CustomObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import testkit.BudgetTest;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.ContentEncodings;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// The environment of the handler is set in the surefire configuration, where
+// every storage codec is tested in its own execution
+public class CreateHandlerTest extends BudgetTest<APIGatewayProxyResponseEvent> {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String MANIFEST_S3_BUCKET_NAME = "manifest";
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaCreateEvent";
+
+  // The custom object and the manifest
+  private static final int MAX_S3_CALLS_PER_CREATE = 2;
+
+  // Every custom object of a bulk request, plus one manifest per request
+  private static final int MAX_S3_CALLS_PER_BULK_OBJECT = 1;
+
+  // Objects of the bulk request of the call budget
+  private static final int BULK_COUNT = 200;
+
+  // Bytes which the handler thread may allocate for a single create
+  private static final long MAX_ALLOCATED_BYTES_PER_CREATE = 2 * 1024 * 1024;
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static CreateHandler handler;
+
+  private final Gson gson = new Gson();
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new CreateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void storesCustomObjectAndManifest() {
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyResponseEvent response = invoke(Events.apiGatewayRequest(), context);
+    assertEquals(200, response.getStatusCode());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(1, events.size());
+
+    Attributes attributes = events.get(0).getAttributes();
+    assertEquals(true, attributes.get(AttributeKey.booleanKey("is.successful")));
+    assertEquals(INPUT_S3_BUCKET_NAME, attributes.get(AttributeKey.stringKey("bucket.id")));
+    assertEquals(context.getAwsRequestId(), attributes.get(AttributeKey.stringKey("aws.request.id")));
+
+    // The custom object is stored under the key of the event
+    String keyName = attributes.get(AttributeKey.stringKey("key.name"));
+    StoredObject object = fakeAws.s3().getObject(INPUT_S3_BUCKET_NAME, keyName);
+    assertNotNull(object);
+    assertEquals(ContentEncodings.ofStorageCodec(), object.getContentEncoding());
+
+    CustomObject customObject = CustomObjects.decode(object, CustomObject.class);
+    assertEquals("test", customObject.getItem());
+    assertFalse(customObject.getIsUpdated());
+    assertFalse(customObject.getIsChecked());
+
+    // The manifest of the invocation lists the key
+    Map<String, StoredObject> manifests = fakeAws.s3().getObjects(MANIFEST_S3_BUCKET_NAME);
+    assertEquals(1, manifests.size());
+    Map.Entry<String, StoredObject> manifest = manifests.entrySet().iterator().next();
+    assertTrue(manifest.getKey().endsWith("/" + context.getAwsRequestId()));
+    assertEquals(keyName, manifest.getValue().getContentAsString());
+
+    assertTrue(fakeAws.s3().getCallCount() <= MAX_S3_CALLS_PER_CREATE);
+  }
+
+  @Test
+  public void tracesStagesAsChildSpans() {
+    FakeContext context = new FakeContext("create");
+
+    invoke(Events.apiGatewayRequest(), context);
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    for (String spanName : List.of("create.parse", "create.transform", "create.store")) {
+      List<SpanData> spans = telemetry.getFinishedSpans(spanName);
+      assertFalse(spans.isEmpty(), spanName + " is not traced.");
+      for (SpanData span : spans)
+        assertEquals(invocationSpan.getSpanId(), span.getParentSpanId());
+    }
+  }
+
+  @Test
+  public void storesBulkObjects() {
+    int count = 200;
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyResponseEvent response = invoke(Events.apiGatewayBulkRequest(count, "bulk"), context);
+    assertEquals(200, response.getStatusCode());
+
+    BulkCreateSummary summary = gson.fromJson(response.getBody(), BulkCreateSummary.class);
+    assertEquals(count, summary.getWritten());
+    assertTrue(summary.getFailedKeys().isEmpty());
+
+    // Every object gets its own event so that it can be joined by its key
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(count, events.size());
+    for (EventData event : events) {
+      assertEquals(true, event.getAttributes().get(AttributeKey.booleanKey("is.successful")));
+      assertTrue(event.getAttributes().get(AttributeKey.stringKey("key.name")).startsWith(summary.getKeyPrefix() + "-"));
+    }
+
+    Attributes attributes = telemetry.getInvocationSpan(context).getAttributes();
+    assertEquals(summary.getKeyPrefix(), attributes.get(AttributeKey.stringKey("key.prefix")));
+    assertEquals((long) count, attributes.get(AttributeKey.longKey("bulk.written")));
+
+    assertEquals(count, fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).size());
+  }
+
+  @Test
+  public void failsRequestBeforeStoringCustomObjectIfManifestIsNotWritten() {
+    fakeAws.s3().denyAccess(MANIFEST_S3_BUCKET_NAME);
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyResponseEvent response = invoke(Events.apiGatewayRequest(), context);
+    assertEquals(500, response.getStatusCode());
+
+    // No custom object is stored which the delete would never find
+    assertTrue(fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).isEmpty());
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(1, events.size());
+    assertEquals(false, events.get(0).getAttributes().get(AttributeKey.booleanKey("is.successful")));
+  }
+
+  @Test
+  public void rejectsInvalidBulkCount() {
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyRequestEvent request = Events.apiGatewayRequest(null, Map.of("count", "0"));
+    APIGatewayProxyResponseEvent response = invoke(request, context);
+
+    assertEquals(400, response.getStatusCode());
+    assertEquals(0, fakeAws.s3().getCallCount());
+  }
+
+  @Test
+  public void rejectsInvalidItemTemplate() {
+    FakeContext context = new FakeContext("create");
+
+    APIGatewayProxyRequestEvent request = Events.apiGatewayRequest("not a template", Map.of("count", "1"));
+    APIGatewayProxyResponseEvent response = invoke(request, context);
+
+    assertEquals(400, response.getStatusCode());
+    assertEquals(0, fakeAws.s3().getCallCount());
+  }
+
+  @Test
+  public void skipsBulkUploadsIfDeadlineIsExhausted() {
+    int count = 50;
+
+    // Less than the reserve of the deadline is left
+    FakeContext context = new FakeContext("create").withRemainingTimeInMillis(500);
+
+    APIGatewayProxyResponseEvent response = invoke(Events.apiGatewayBulkRequest(count, "bulk"), context);
+    assertEquals(207, response.getStatusCode());
+
+    BulkCreateSummary summary = gson.fromJson(response.getBody(), BulkCreateSummary.class);
+    assertEquals(0, summary.getWritten());
+    assertEquals(count, summary.getFailedKeys().size());
+    assertEquals(0, fakeAws.s3().getCallCount());
+  }
+
+  @Override
+  protected String getFunctionName() {
+    return "create";
+  }
+
+  // The create gets no keys, it names the objects itself. A single object is
+  // created by a plain request and more by a bulk request.
+  @Override
+  protected Supplier<APIGatewayProxyResponseEvent> prepareInvocation(
+      List<String> keyNames,
+      FakeContext context) {
+
+    APIGatewayProxyRequestEvent request = keyNames.size() == 1
+        ? Events.apiGatewayRequest()
+        : Events.apiGatewayBulkRequest(keyNames.size(), "bulk");
+    return () -> invoke(request, context);
+  }
+
+  @Override
+  protected void assertProcessed(
+      APIGatewayProxyResponseEvent response,
+      List<String> keyNames) {
+
+    assertEquals(200, response.getStatusCode());
+    if (keyNames.size() > 1)
+      assertEquals(keyNames.size(), gson.fromJson(response.getBody(), BulkCreateSummary.class).getWritten());
+  }
+
+  @Override
+  protected int getCallBudgetItemCount() {
+    return BULK_COUNT;
+  }
+
+  @Override
+  protected int getMaxS3Calls(
+      int itemCount) {
+    return itemCount * MAX_S3_CALLS_PER_BULK_OBJECT + 1;
+  }
+
+  @Override
+  protected int getAllocationBudgetItemCount() {
+    return 1;
+  }
+
+  @Override
+  protected long getMaxAllocatedBytesPerItem() {
+    return MAX_ALLOCATED_BYTES_PER_CREATE;
+  }
+
+  private APIGatewayProxyResponseEvent invoke(
+      APIGatewayProxyRequestEvent request,
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(request, context));
+  }
+}
@@ -0,0 +1,105 @@
+package create.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.Gson;
+
+import common.codec.StorageCodec;
+import create.daos.CustomObject;
+
+// CPU cost of encoding and decoding the custom objects per codec and payload
+// size. The bytes saved per codec and payload size are printed before the
+// benchmarks are run.
+//
+// mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=create.codec.StorageCodecBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageCodecBenchmark {
+
+  private static final String[] WORDS = {
+      "test", "item", "order", "customer", "update", "check", "bucket", "object", "lambda", "event",
+  };
+
+  @Param({ "1024", "16384", "262144", "1048576" })
+  public int payloadSize;
+
+  @Param({ "NONE", "GZIP", "ZSTD" })
+  public StorageCodec codec;
+
+  private byte[] payload;
+  private byte[] encodedPayload;
+
+  @Setup
+  public void setup() throws IOException {
+    this.payload = createPayload(this.payloadSize);
+    this.encodedPayload = this.codec.encode(this.payload);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return this.codec.encode(this.payload);
+  }
+
+  @Benchmark
+  public byte[] decode() throws IOException {
+    try (InputStream in = this.codec.decode(new ByteArrayInputStream(this.encodedPayload))) {
+      return in.readAllBytes();
+    }
+  }
+
+  private static byte[] createPayload(
+      int payloadSize) {
+
+    // Words from a small vocabulary in random order compress roughly like a
+    // real item text
+    Random random = new Random(payloadSize);
+    StringBuilder item = new StringBuilder(payloadSize);
+    while (item.length() < payloadSize)
+      item.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+
+    CustomObject customObject = new CustomObject(item.toString(), false, false);
+    return new Gson().toJson(customObject).getBytes(StandardCharsets.UTF_8);
+  }
+
+  public static void main(
+      String[] args) throws Exception {
+
+    System.out.println(String.format("%-10s %-6s %12s %12s %10s", "payload", "codec", "bytes", "encoded", "saved"));
+    for (String payloadSize : StorageCodecBenchmark.class.getField("payloadSize").getAnnotation(Param.class).value()) {
+      byte[] payload = createPayload(Integer.parseInt(payloadSize));
+      for (StorageCodec codec : StorageCodec.values()) {
+        int encodedSize = codec.encode(payload).length;
+        System.out.println(String.format("%-10s %-6s %12d %12d %9.1f%%",
+            payloadSize, codec, payload.length, encodedSize, 100.0 * (payload.length - encodedSize) / payload.length));
+      }
+    }
+
+    new Runner(new OptionsBuilder()
+        .include(StorageCodecBenchmark.class.getSimpleName())
+        .build())
+        .run();
+  }
+}
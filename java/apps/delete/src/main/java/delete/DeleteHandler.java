@@ -1,28 +1,43 @@
 package delete;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.services.lambda.runtime.Context;
 
+import common.deadline.Deadline;
+import common.faults.FaultInjector;
+import common.resilience.ResiliencePolicy;
+import common.tracing.StageTracer;
+import common.tracing.StageTracer.Stage;
+import delete.daos.PurgeCandidate;
+import delete.daos.PurgeSelection;
+import delete.purge.PurgePolicy;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
 import software.amazon.awssdk.core.SdkSystemSetting;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
@@ -36,20 +51,74 @@ public class DeleteHandler {
   private static final Logger logger = LoggerFactory.getLogger(DeleteHandler.class);
 
   private static String INPUT_S3_BUCKET_NAME;
+  private static String OUTPUT_S3_BUCKET_NAME;
   private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaDeleteEvent";
+  private static String DELETE_MODE;
+
+  // In manifest mode, the keys to delete are read from the manifests which
+  // the create writes instead of listing the whole input bucket. The last
+  // consumed manifest is kept as checkpoint so that every run only reads the
+  // manifests which are written since the previous one.
+  private static final String DELETE_MODE_MANIFEST = "manifest";
+  private static final String MANIFEST_KEY_PREFIX = "manifests/";
+  private static final String MANIFEST_CHECKPOINT_KEY = "checkpoint";
+  private static final DateTimeFormatter MANIFEST_MINUTE_FORMATTER = DateTimeFormatter
+      .ofPattern("yyyyMMddHHmm")
+      .withZone(ZoneOffset.UTC);
+  private static String MANIFEST_S3_BUCKET_NAME;
+
+  // Manifests of the current and the previous minute may still be written
+  // and are left to the next run
+  private static final Duration MANIFEST_GRACE_PERIOD = Duration.ofMinutes(1);
+
+  // Retained custom objects are written into a new manifest to be evaluated
+  // again. Older ones are given up on and reported, and are left to the
+  // expiration of the input bucket.
+  private static final Duration MANIFEST_MAX_REQUEUE_AGE = Duration.ofDays(1);
+
+  // Maximum number of keys which S3 deletes per request
+  private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+
+  // Time which is kept free at the end of the invocation for ending the span
+  // and flushing the telemetry. It is parsed once per container.
+  private static final long DEADLINE_RESERVE_MILLIS = Deadline.getReserveMillisFromEnv();
+  private static boolean DEADLINE_STOP_ON_EXHAUSTION;
+
+  // Traces the stages of the invocation
+  private final static StageTracer stageTracer = StageTracer.fromEnv("delete");
+
+  // The S3 client is built on its first use instead of in the static
+  // initializer so that the SDK is only loaded once it is needed
+  private static class S3ClientHolder {
+
+    private static final S3Client s3Client;
+
+    static {
+      final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
+      final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+
+      // Wrap the client with the retry and circuit breaker policy
+      final ResiliencePolicy resiliencePolicy = ResiliencePolicy.fromEnv();
+
+      // Inject faults into the client if enabled
+      final FaultInjector faultInjector = FaultInjector.fromEnv("s3");
+
+      s3Client = S3Client.builder()
+          .httpClient(UrlConnectionHttpClient.builder().build())
+          .region(awsRegion)
+          .overrideConfiguration(faultInjector.applyTo(resiliencePolicy.getClientOverrideConfiguration("s3")))
+          .build();
+    }
+  }
 
-  private Random random = new Random(System.currentTimeMillis());
-
-  private final static S3Client s3Client;
-
-  static {
-    final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
-    final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+  private static S3Client getS3Client() {
+    return S3ClientHolder.s3Client;
+  }
 
-    s3Client = S3Client.builder()
-        .httpClient(UrlConnectionHttpClient.builder().build())
-        .region(awsRegion)
-        .build();
+  // Selects the custom objects which are deleted. It is built on its first
+  // use and kept for the container.
+  private static PurgePolicy getPurgePolicy() {
+    return PurgePolicy.fromEnv(getS3Client(), OUTPUT_S3_BUCKET_NAME);
   }
 
   public Void handleRequest(
@@ -59,11 +128,30 @@ public class DeleteHandler {
       // Parse environment variables
       parseEnvVars();
 
-      // Get all custom objects in input bucket
-      List<S3Object> allCustomObjects = getAllCustomObjectsInInputS3();
+      // Start the latency budget of this invocation
+      Deadline deadline = new Deadline(context, DEADLINE_RESERVE_MILLIS);
+
+      if (DELETE_MODE_MANIFEST.equals(DELETE_MODE)) {
+        // Delete the custom objects which are written since the last run
+        deleteCustomObjectsOfManifestsInInputS3(context, deadline);
+      } else {
+        // Get all custom objects in input bucket
+        List<S3Object> allCustomObjects = stageTracer.trace(Stage.FETCH,
+            () -> getAllCustomObjectsInInputS3(deadline));
+
+        // Select the custom objects which the purge policy allows to delete
+        List<PurgeCandidate> candidates = new ArrayList<>(allCustomObjects.size());
+        for (S3Object object : allCustomObjects)
+          candidates.add(new PurgeCandidate(object.key(), object.lastModified()));
+        PurgeSelection selection = stageTracer.trace(Stage.EVALUATE,
+            () -> getPurgePolicy().select(deadline, candidates));
 
-      // Delete the custom objects in input bucket
-      deleteAllCustomObjectsInInputS3(allCustomObjects);
+        // Delete the selected custom objects in input bucket
+        stageTracer.trace(Stage.DELETE, () -> deleteSelectedCustomObjectsInInputS3(deadline, selection.getToPurge()));
+
+        // Enrich span with the result of the purge policy
+        enrichSpanWithPurgeResult(selection.getToPurge().size(), selection.getToRetain().size());
+      }
 
       // Enrich span with success
       enrichSpanWithSuccess(context);
@@ -82,33 +170,47 @@ public class DeleteHandler {
   private void parseEnvVars() {
     logger.info("Parsing env vars...");
     INPUT_S3_BUCKET_NAME = System.getenv("INPUT_S3_BUCKET_NAME");
+    DELETE_MODE = System.getenv("DELETE_MODE");
+    OUTPUT_S3_BUCKET_NAME = System.getenv("OUTPUT_S3_BUCKET_NAME");
+    MANIFEST_S3_BUCKET_NAME = System.getenv("MANIFEST_S3_BUCKET_NAME");
+
+    DEADLINE_STOP_ON_EXHAUSTION = Boolean.parseBoolean(System.getenv("DEADLINE_STOP_ON_EXHAUSTION"));
     logger.info("Parsing env vars is succeeded.");
   }
 
-  private List<S3Object> getAllCustomObjectsInInputS3() throws Exception {
+  private List<S3Object> getAllCustomObjectsInInputS3(
+      Deadline deadline) throws Exception {
 
     logger.info("Getting all custom objects in the input S3...");
 
     String bucketName = String.valueOf(INPUT_S3_BUCKET_NAME);
-    if (causeError())
-      bucketName = "wrong-bucket-name";
 
     try {
       // List all objects in the bucket
       ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
           .bucket(bucketName)
+          .overrideConfiguration(deadline.getOverrideConfiguration())
           .build();
 
       List<S3Object> allCustomObjects = new ArrayList<>();
       ListObjectsV2Response listResponse;
 
       do {
-        listResponse = s3Client.listObjectsV2(listRequest);
+        listResponse = getS3Client().listObjectsV2(listRequest);
         allCustomObjects.addAll(listResponse.contents());
 
+        // Stop listing if the budget is nearly exhausted and delete only the
+        // objects which are listed so far
+        if (listResponse.isTruncated() && DEADLINE_STOP_ON_EXHAUSTION && deadline.isExhausted()) {
+          logger.error("Latency budget is exhausted! Listing is stopped at " + allCustomObjects.size() + " objects.");
+          enrichSpanWithDeadlineExhaustion(deadline);
+          break;
+        }
+
         listRequest = ListObjectsV2Request.builder()
             .bucket(bucketName)
             .continuationToken(listResponse.nextContinuationToken())
+            .overrideConfiguration(deadline.getOverrideConfiguration())
             .build();
 
       } while (listResponse.isTruncated());
@@ -122,41 +224,272 @@ public class DeleteHandler {
     }
   }
 
-  private void deleteAllCustomObjectsInInputS3(
-      List<S3Object> allCustomObjects) {
+  private void deleteSelectedCustomObjectsInInputS3(
+      Deadline deadline,
+      List<PurgeCandidate> selectedCustomObjects) {
+
+    logger.info("Deleting " + selectedCustomObjects.size() + " selected custom objects in the input S3...");
+
+    if (deleteCustomObjectsInInputS3(deadline, getKeyNames(selectedCustomObjects)) > 0) {
+      logger.error("Deleting selected custom objects in the input S3 is failed!");
+      return;
+    }
+
+    logger.info("Deleting custom objects in the input S3 is succeeded.");
+  }
+
+  private List<String> getKeyNames(
+      List<PurgeCandidate> candidates) {
 
-    logger.info("Deleting all custom objects in the input S3...");
+    List<String> keyNames = new ArrayList<>(candidates.size());
+    for (PurgeCandidate candidate : candidates)
+      keyNames.add(candidate.getKeyName());
+    return keyNames;
+  }
 
-    // Delete the objects
-    List<ObjectIdentifier> objectIdentifiersForDeletion = new ArrayList<>();
+  private int deleteCustomObjectsInInputS3(
+      Deadline deadline,
+      List<String> keyNames) {
 
-    for (S3Object object : allCustomObjects)
-      objectIdentifiersForDeletion.add(ObjectIdentifier.builder().key(object.key()).build());
+    int failedKeys = 0;
 
-    DeleteObjectsRequest deleteRequest = DeleteObjectsRequest.builder()
-        .bucket(INPUT_S3_BUCKET_NAME)
-        .delete(Delete.builder().objects(objectIdentifiersForDeletion).build())
-        .build();
+    // Delete the objects in chunks of the maximum request size
+    for (int from = 0; from < keyNames.size(); from += MAX_KEYS_PER_DELETE_REQUEST) {
+      List<ObjectIdentifier> objectIdentifiersForDeletion = new ArrayList<>();
+      for (String keyName : keyNames.subList(from, Math.min(from + MAX_KEYS_PER_DELETE_REQUEST, keyNames.size())))
+        objectIdentifiersForDeletion.add(ObjectIdentifier.builder().key(keyName).build());
 
-    DeleteObjectsResponse deleteObjects = s3Client.deleteObjects(deleteRequest);
+      DeleteObjectsRequest deleteRequest = DeleteObjectsRequest.builder()
+          .bucket(INPUT_S3_BUCKET_NAME)
+          .delete(Delete.builder().objects(objectIdentifiersForDeletion).quiet(true).build())
+          .overrideConfiguration(deadline.getOverrideConfiguration())
+          .build();
 
-    if (deleteObjects.hasErrors()) {
-      logger.error("Deleting all custom objects in the input S3 is failed!");
+      DeleteObjectsResponse deleteObjects = getS3Client().deleteObjects(deleteRequest);
 
-      List<S3Error> errors = deleteObjects.errors();
-      for (S3Error error : errors)
-        logger.error("S3 Error: " + error);
+      if (deleteObjects.hasErrors()) {
+        List<S3Error> errors = deleteObjects.errors();
+        for (S3Error error : errors)
+          logger.error("S3 Error: " + error);
 
-      return;
+        failedKeys += errors.size();
+      }
     }
 
-    logger.info("Deleting custom objects in the input S3 is succeeded.");
+    return failedKeys;
+  }
+
+  private void deleteCustomObjectsOfManifestsInInputS3(
+      Context context,
+      Deadline deadline) throws Exception {
+
+    logger.info("Deleting custom objects of the manifests in the input S3...");
+
+    // Get the last consumed manifest
+    String checkpoint = stageTracer.trace(Stage.FETCH, () -> getCheckpointFromManifestS3(deadline));
+
+    // Get the manifests which are written since then. If the purge policy
+    // keeps young custom objects, their manifests are not read at all.
+    Duration purgeMinAge = getPurgePolicy().getMinAge();
+    Duration manifestMinAge = purgeMinAge.compareTo(MANIFEST_GRACE_PERIOD) > 0
+        ? purgeMinAge
+        : MANIFEST_GRACE_PERIOD;
+    String lastManifestKeyExclusive = MANIFEST_KEY_PREFIX
+        + MANIFEST_MINUTE_FORMATTER.format(Instant.now().minus(manifestMinAge));
+    List<String> manifestKeyNames = stageTracer.trace(Stage.FETCH,
+        () -> getManifestKeyNamesInManifestS3(deadline, checkpoint, lastManifestKeyExclusive));
+
+    // Delete the custom objects of many manifests at once and move the
+    // checkpoint after every successful deletion
+    List<PurgeCandidate> candidates = new ArrayList<>();
+    int consumedManifests = 0;
+    long deletedCustomObjects = 0;
+    long retainedCustomObjects = 0;
+    long abandonedCustomObjects = 0;
+
+    for (int i = 0; i < manifestKeyNames.size(); i++) {
+
+      // Stop consuming if the budget is nearly exhausted. The manifests after
+      // the checkpoint are read again in the next run.
+      if (DEADLINE_STOP_ON_EXHAUSTION && deadline.isExhausted()) {
+        logger.error("Latency budget is exhausted! Consuming manifests is stopped at " + consumedManifests + " manifests.");
+        enrichSpanWithDeadlineExhaustion(deadline);
+        break;
+      }
+
+      String manifestKeyName = manifestKeyNames.get(i);
+      candidates.addAll(stageTracer.trace(Stage.FETCH, () -> getPurgeCandidatesOfManifest(deadline, manifestKeyName)));
+
+      boolean isLastManifest = i == manifestKeyNames.size() - 1;
+      if (candidates.size() < MAX_KEYS_PER_DELETE_REQUEST && !isLastManifest)
+        continue;
+
+      // Select the custom objects which the purge policy allows to delete
+      PurgeSelection selection = stageTracer.trace(Stage.EVALUATE,
+          () -> getPurgePolicy().select(deadline, candidates));
+
+      List<String> keyNames = getKeyNames(selection.getToPurge());
+      int failedKeys = stageTracer.trace(Stage.DELETE, () -> deleteCustomObjectsInInputS3(deadline, keyNames));
+      if (failedKeys > 0)
+        throw new Exception("Deleting " + failedKeys + " custom objects of the manifests in the input S3 is failed");
+
+      // Write the retained custom objects into a new manifest before the
+      // checkpoint is moved past the manifests which they are listed in
+      String requeueManifestKeyName = MANIFEST_KEY_PREFIX
+          + MANIFEST_MINUTE_FORMATTER.format(Instant.now()) + "/"
+          + context.getAwsRequestId() + "-" + i;
+      int abandonedKeys = stageTracer.trace(Stage.DELETE,
+          () -> requeuePurgeCandidatesInManifestS3(deadline, requeueManifestKeyName, selection.getToRetain()));
+
+      stageTracer.trace(Stage.DELETE, () -> storeCheckpointInManifestS3(deadline, manifestKeyName));
+
+      consumedManifests = i + 1;
+      deletedCustomObjects += selection.getToPurge().size();
+      retainedCustomObjects += selection.getToRetain().size();
+      abandonedCustomObjects += abandonedKeys;
+      candidates.clear();
+    }
+
+    // Enrich span with the consumed manifests and the result of the purge
+    // policy
+    enrichSpanWithManifestProgress(consumedManifests);
+    enrichSpanWithPurgeResult(deletedCustomObjects, retainedCustomObjects);
+    enrichSpanWithAbandonedCustomObjects(abandonedCustomObjects);
+
+    logger.info("Deleting custom objects of the manifests in the input S3 is succeeded.");
+  }
+
+  private String getCheckpointFromManifestS3(
+      Deadline deadline) {
+
+    try {
+      return getS3Client().getObjectAsBytes(
+          GetObjectRequest
+              .builder()
+              .bucket(MANIFEST_S3_BUCKET_NAME)
+              .key(MANIFEST_CHECKPOINT_KEY)
+              .overrideConfiguration(deadline.getOverrideConfiguration())
+              .build())
+          .asUtf8String();
+    } catch (NoSuchKeyException e) {
+      // Nothing is consumed yet
+      return null;
+    }
   }
 
-  private boolean causeError() {
-    // Cause an error if the random number is 1
-    int n = random.nextInt(3);
-    return n == 1;
+  private void storeCheckpointInManifestS3(
+      Deadline deadline,
+      String manifestKeyName) {
+
+    getS3Client().putObject(
+        PutObjectRequest
+            .builder()
+            .bucket(MANIFEST_S3_BUCKET_NAME)
+            .key(MANIFEST_CHECKPOINT_KEY)
+            .contentType("text/plain")
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build(),
+        RequestBody.fromString(manifestKeyName));
+  }
+
+  private List<String> getManifestKeyNamesInManifestS3(
+      Deadline deadline,
+      String checkpoint,
+      String lastManifestKeyExclusive) {
+
+    // Only the manifests after the checkpoint are listed. The keys start
+    // with their minute so that they are listed in the order of writing.
+    ListObjectsV2Request.Builder listRequestBuilder = ListObjectsV2Request.builder()
+        .bucket(MANIFEST_S3_BUCKET_NAME)
+        .prefix(MANIFEST_KEY_PREFIX)
+        .overrideConfiguration(deadline.getOverrideConfiguration());
+    if (checkpoint != null)
+      listRequestBuilder.startAfter(checkpoint);
+
+    List<String> manifestKeyNames = new ArrayList<>();
+    ListObjectsV2Response listResponse;
+
+    do {
+      listResponse = getS3Client().listObjectsV2(listRequestBuilder.build());
+
+      for (S3Object object : listResponse.contents()) {
+        if (object.key().compareTo(lastManifestKeyExclusive) >= 0)
+          return manifestKeyNames;
+        manifestKeyNames.add(object.key());
+      }
+
+      listRequestBuilder.continuationToken(listResponse.nextContinuationToken());
+    } while (listResponse.isTruncated() && !(DEADLINE_STOP_ON_EXHAUSTION && deadline.isExhausted()));
+
+    return manifestKeyNames;
+  }
+
+  private List<PurgeCandidate> getPurgeCandidatesOfManifest(
+      Deadline deadline,
+      String manifestKeyName) {
+
+    String manifest = getS3Client().getObjectAsBytes(
+        GetObjectRequest
+            .builder()
+            .bucket(MANIFEST_S3_BUCKET_NAME)
+            .key(manifestKeyName)
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build())
+        .asUtf8String();
+
+    // The custom objects are created in the minute of the manifest unless
+    // the line has its own creation time, which requeued lines have
+    String minute = manifestKeyName.substring(MANIFEST_KEY_PREFIX.length(), manifestKeyName.lastIndexOf('/'));
+    Instant manifestCreatedAt = MANIFEST_MINUTE_FORMATTER.parse(minute, Instant::from);
+
+    List<PurgeCandidate> candidates = new ArrayList<>();
+    for (String line : manifest.split("\\n")) {
+      if (line.isBlank())
+        continue;
+
+      String[] fields = line.split("\\t");
+      Instant createdAt = fields.length > 1
+          ? Instant.ofEpochMilli(Long.parseLong(fields[1]))
+          : manifestCreatedAt;
+      candidates.add(new PurgeCandidate(fields[0], createdAt));
+    }
+
+    return candidates;
+  }
+
+  // Returns the number of the custom objects which are given up on
+  private int requeuePurgeCandidatesInManifestS3(
+      Deadline deadline,
+      String manifestKeyName,
+      List<PurgeCandidate> retainedCustomObjects) {
+
+    // Custom objects which are retained for too long are reported and left
+    // to the expiration of the input bucket
+    Instant oldestCreatedAt = Instant.now().minus(MANIFEST_MAX_REQUEUE_AGE);
+
+    List<String> lines = new ArrayList<>();
+    for (PurgeCandidate candidate : retainedCustomObjects) {
+      if (candidate.getCreatedAt().isAfter(oldestCreatedAt))
+        lines.add(candidate.getKeyName() + "\t" + candidate.getCreatedAt().toEpochMilli());
+      else
+        logger.warn("Custom object [" + candidate.getKeyName() + "] is retained for longer than "
+            + MANIFEST_MAX_REQUEUE_AGE + " and is not requeued.");
+    }
+
+    int abandonedKeys = retainedCustomObjects.size() - lines.size();
+    if (lines.isEmpty())
+      return abandonedKeys;
+
+    getS3Client().putObject(
+        PutObjectRequest
+            .builder()
+            .bucket(MANIFEST_S3_BUCKET_NAME)
+            .key(manifestKeyName)
+            .contentType("text/plain")
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build(),
+        RequestBody.fromString(String.join("\n", lines)));
+    return abandonedKeys;
   }
 
   private void enrichSpanWithSuccess(
@@ -189,4 +522,35 @@ public class DeleteHandler {
 
     span.addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
   }
+
+  private void enrichSpanWithManifestProgress(
+      int consumedManifests) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.longKey("manifest.consumed"), (long) consumedManifests);
+  }
+
+  private void enrichSpanWithPurgeResult(
+      long deletedCustomObjects,
+      long retainedCustomObjects) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.longKey("purge.deleted.objects"), deletedCustomObjects);
+    span.setAttribute(AttributeKey.longKey("purge.retained.objects"), retainedCustomObjects);
+  }
+
+  private void enrichSpanWithAbandonedCustomObjects(
+      long abandonedCustomObjects) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.longKey("purge.abandoned.objects"), abandonedCustomObjects);
+  }
+
+  private void enrichSpanWithDeadlineExhaustion(
+      Deadline deadline) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.booleanKey("deadline.exhausted"), true);
+    span.setAttribute(AttributeKey.longKey("deadline.remaining.ms"), deadline.getRemainingMillis());
+  }
 }
@@ -0,0 +1,24 @@
+package delete.daos;
+
+import java.time.Instant;
+
+public class PurgeCandidate {
+
+  private String keyName;
+  private Instant createdAt;
+
+  public PurgeCandidate(
+      String keyName,
+      Instant createdAt) {
+    this.keyName = keyName;
+    this.createdAt = createdAt;
+  }
+
+  public String getKeyName() {
+    return this.keyName;
+  }
+
+  public Instant getCreatedAt() {
+    return this.createdAt;
+  }
+}
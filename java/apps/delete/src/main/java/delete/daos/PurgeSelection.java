@@ -0,0 +1,24 @@
+package delete.daos;
+
+import java.util.List;
+
+public class PurgeSelection {
+
+  private List<PurgeCandidate> toPurge;
+  private List<PurgeCandidate> toRetain;
+
+  public PurgeSelection(
+      List<PurgeCandidate> toPurge,
+      List<PurgeCandidate> toRetain) {
+    this.toPurge = toPurge;
+    this.toRetain = toRetain;
+  }
+
+  public List<PurgeCandidate> getToPurge() {
+    return this.toPurge;
+  }
+
+  public List<PurgeCandidate> getToRetain() {
+    return this.toRetain;
+  }
+}
@@ -0,0 +1,30 @@
+package delete.purge;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import common.deadline.Deadline;
+import delete.daos.PurgeCandidate;
+
+public class AgePredicate implements PurgePredicate {
+
+  private final Duration minAge;
+
+  public AgePredicate(
+      Duration minAge) {
+    this.minAge = minAge;
+  }
+
+  @Override
+  public boolean needsObject() {
+    return false;
+  }
+
+  @Override
+  public boolean test(
+      Deadline deadline,
+      PurgeCandidate candidate) {
+    return candidate.getCreatedAt() != null
+        && candidate.getCreatedAt().isBefore(Instant.now().minus(this.minAge));
+  }
+}
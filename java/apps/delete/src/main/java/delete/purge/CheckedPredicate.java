@@ -0,0 +1,102 @@
+package delete.purge;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+
+import common.codec.StorageCodec;
+import common.deadline.Deadline;
+import delete.daos.CustomObject;
+import delete.daos.PurgeCandidate;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+public class CheckedPredicate implements PurgePredicate {
+
+  // In metadata mode, the check keeps the check state as object metadata
+  // which is read without downloading the object
+  private static final String CUSTOM_OBJECT_METADATA_IS_CHECKED = "is-checked";
+
+  private final Gson gson = new Gson();
+
+  private final S3Client s3Client;
+  private final String outputBucketName;
+  private final boolean isCheckedInMetadata;
+
+  public CheckedPredicate(
+      S3Client s3Client,
+      String outputBucketName,
+      boolean isCheckedInMetadata) {
+    this.s3Client = s3Client;
+    this.outputBucketName = outputBucketName;
+    this.isCheckedInMetadata = isCheckedInMetadata;
+  }
+
+  @Override
+  public boolean needsObject() {
+    return true;
+  }
+
+  @Override
+  public boolean test(
+      Deadline deadline,
+      PurgeCandidate candidate) throws Exception {
+
+    // The output counterpart has the same key as the input object
+    try {
+      return this.isCheckedInMetadata
+          ? isCheckedInMetadata(deadline, candidate)
+          : isCheckedInBody(deadline, candidate);
+    } catch (S3Exception e) {
+      // The custom object is not updated yet
+      if (e.statusCode() == 404)
+        return false;
+      throw e;
+    }
+  }
+
+  private boolean isCheckedInMetadata(
+      Deadline deadline,
+      PurgeCandidate candidate) {
+
+    HeadObjectResponse headObjectResponse = this.s3Client.headObject(
+        HeadObjectRequest
+            .builder()
+            .bucket(this.outputBucketName)
+            .key(candidate.getKeyName())
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build());
+
+    return "true".equals(headObjectResponse.metadata().get(CUSTOM_OBJECT_METADATA_IS_CHECKED));
+  }
+
+  private boolean isCheckedInBody(
+      Deadline deadline,
+      PurgeCandidate candidate) throws Exception {
+
+    GetObjectRequest getObjectRequest = GetObjectRequest
+        .builder()
+        .bucket(this.outputBucketName)
+        .key(candidate.getKeyName())
+        .overrideConfiguration(deadline.getOverrideConfiguration())
+        .build();
+
+    try (ResponseInputStream<GetObjectResponse> responseStream = this.s3Client.getObject(getObjectRequest)) {
+      // The delete ships no native code, so custom objects which are stored
+      // with zstd are reported as unsupported and retained, unless the check
+      // keeps its state in their metadata
+      StorageCodec codec = StorageCodec.fromContentEncoding(responseStream.response().contentEncoding());
+      Reader reader = new InputStreamReader(codec.decode(responseStream), StandardCharsets.UTF_8);
+      CustomObject customObject = this.gson.fromJson(reader, CustomObject.class);
+
+      return customObject != null && customObject.getIsChecked();
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package delete.purge;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.deadline.Deadline;
+import delete.daos.PurgeCandidate;
+import delete.daos.PurgeSelection;
+import io.opentelemetry.context.Context;
+import software.amazon.awssdk.services.s3.S3Client;
+
+public class PurgePolicy {
+
+  private static final Logger logger = LoggerFactory.getLogger(PurgePolicy.class);
+
+  private static final String PURGE_POLICY_ALL = "all";
+  private static final String PURGE_POLICY_AGE = "age";
+  private static final String PURGE_POLICY_CHECKED = "checked";
+
+  // The check state is read from where the check keeps it
+  private static final String CHECK_MODE_METADATA = "metadata";
+
+  private static final long DEFAULT_PURGE_MIN_AGE_MINUTES = 5;
+  private static final int DEFAULT_PURGE_PARALLELISM = 8;
+
+  // The policy is built once per container, as its predicates hold the S3
+  // client and its executor is kept across the invocations
+  private static PurgePolicy policy;
+
+  // Predicates on the key and the timestamp are evaluated before the ones
+  // which fetch the object so that only the remaining candidates are fetched
+  private final List<PurgePredicate> metadataPredicates = new ArrayList<>();
+  private final List<PurgePredicate> objectPredicates = new ArrayList<>();
+
+  private final Duration minAge;
+  private final ExecutorService executor;
+
+  private PurgePolicy(
+      S3Client s3Client,
+      String outputBucketName) {
+
+    this.minAge = Duration.ofMinutes(getPositiveLongEnv("PURGE_MIN_AGE_MINUTES", DEFAULT_PURGE_MIN_AGE_MINUTES));
+
+    // All of the given predicates must hold for an object to be purged
+    for (String name : getEnv("PURGE_POLICY", PURGE_POLICY_ALL).split(",")) {
+      PurgePredicate predicate;
+      switch (name.trim().toLowerCase()) {
+        case PURGE_POLICY_ALL:
+          continue;
+        case PURGE_POLICY_AGE:
+          predicate = new AgePredicate(this.minAge);
+          break;
+        case PURGE_POLICY_CHECKED:
+          predicate = new CheckedPredicate(s3Client, outputBucketName,
+              CHECK_MODE_METADATA.equals(System.getenv("CHECK_MODE")));
+          break;
+        default:
+          throw new IllegalArgumentException("Purge policy [" + name + "] is unknown.");
+      }
+
+      if (predicate.needsObject())
+        this.objectPredicates.add(predicate);
+      else
+        this.metadataPredicates.add(predicate);
+    }
+
+    // Only the predicates which fetch the object run on the executor
+    this.executor = this.objectPredicates.isEmpty()
+        ? null
+        : newExecutor((int) getPositiveLongEnv("PURGE_PARALLELISM", DEFAULT_PURGE_PARALLELISM));
+  }
+
+  public static synchronized PurgePolicy fromEnv(
+      S3Client s3Client,
+      String outputBucketName) {
+    if (policy == null)
+      policy = new PurgePolicy(s3Client, outputBucketName);
+    return policy;
+  }
+
+  // Objects younger than this are never purged if the age is part of the
+  // policy
+  public Duration getMinAge() {
+    return this.metadataPredicates.stream().anyMatch(p -> p instanceof AgePredicate)
+        ? this.minAge
+        : Duration.ZERO;
+  }
+
+  public PurgeSelection select(
+      Deadline deadline,
+      List<PurgeCandidate> candidates) throws Exception {
+
+    List<PurgeCandidate> toPurge = new ArrayList<>();
+    List<PurgeCandidate> toRetain = new ArrayList<>();
+
+    List<PurgeCandidate> remainingCandidates = new ArrayList<>();
+    for (PurgeCandidate candidate : candidates) {
+      if (testMetadataPredicates(deadline, candidate))
+        remainingCandidates.add(candidate);
+      else
+        toRetain.add(candidate);
+    }
+
+    if (this.objectPredicates.isEmpty()) {
+      toPurge.addAll(remainingCandidates);
+      return new PurgeSelection(toPurge, toRetain);
+    }
+
+    // Fetch the objects with bounded parallelism. The fetches run on the pool
+    // threads, so the context of the invocation is passed along for the
+    // events of the resilience layer and the SDK spans.
+    Context parentContext = Context.current();
+    List<Future<Boolean>> results = new ArrayList<>(remainingCandidates.size());
+    for (PurgeCandidate candidate : remainingCandidates)
+      results.add(this.executor.submit(parentContext.wrap(() -> testObjectPredicates(deadline, candidate))));
+
+    for (int i = 0; i < remainingCandidates.size(); i++) {
+      if (results.get(i).get())
+        toPurge.add(remainingCandidates.get(i));
+      else
+        toRetain.add(remainingCandidates.get(i));
+    }
+
+    return new PurgeSelection(toPurge, toRetain);
+  }
+
+  private boolean testMetadataPredicates(
+      Deadline deadline,
+      PurgeCandidate candidate) throws Exception {
+
+    for (PurgePredicate predicate : this.metadataPredicates)
+      if (!predicate.test(deadline, candidate))
+        return false;
+    return true;
+  }
+
+  private boolean testObjectPredicates(
+      Deadline deadline,
+      PurgeCandidate candidate) {
+
+    // Do not start new fetches if the budget is nearly exhausted and keep
+    // the object until the next run
+    if (deadline.isExhausted())
+      return false;
+
+    try {
+      for (PurgePredicate predicate : this.objectPredicates)
+        if (!predicate.test(deadline, candidate))
+          return false;
+      return true;
+    } catch (Exception e) {
+      logger.error("Evaluating purge policy of custom object [" + candidate.getKeyName() + "] is failed: "
+          + e.getMessage());
+      return false;
+    }
+  }
+
+  private static ExecutorService newExecutor(
+      int parallelism) {
+    return Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "purge-policy");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static long getPositiveLongEnv(
+      String name,
+      long defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) return defaultValue;
+
+    try {
+      long parsed = Long.parseLong(value.trim());
+      if (parsed > 0 && parsed <= Integer.MAX_VALUE) return parsed;
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+
+    logger.warn("Invalid " + name + ": " + value + ". Using " + defaultValue + ".");
+    return defaultValue;
+  }
+
+  private static String getEnv(
+      String name,
+      String defaultValue) {
+    String value = System.getenv(name);
+    return value != null ? value : defaultValue;
+  }
+}
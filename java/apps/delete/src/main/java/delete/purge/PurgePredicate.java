@@ -0,0 +1,15 @@
+package delete.purge;
+
+import common.deadline.Deadline;
+import delete.daos.PurgeCandidate;
+
+public interface PurgePredicate {
+
+  // Whether the predicate needs the object itself and not only the key and
+  // the timestamp which are known from the listing
+  boolean needsObject();
+
+  boolean test(
+      Deadline deadline,
+      PurgeCandidate candidate) throws Exception;
+}
@@ -0,0 +1,216 @@
+package delete;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import delete.daos.CustomObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.ContentEncodings;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// The handler runs in manifest mode, which is set in the "manifest"
+// execution of the surefire configuration.
+public class DeleteHandlerManifestTest {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+  private static final String MANIFEST_S3_BUCKET_NAME = "manifest";
+  private static final String MANIFEST_CHECKPOINT_KEY = "checkpoint";
+  private static final DateTimeFormatter MANIFEST_MINUTE_FORMATTER = DateTimeFormatter
+      .ofPattern("yyyyMMddHHmm")
+      .withZone(ZoneOffset.UTC);
+
+  // Older than the minimum age of the purge policy
+  private static final Duration AGED = Duration.ofHours(1);
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static DeleteHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new DeleteHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void purgesCustomObjectsOfManifestsAndMovesCheckpoint() {
+    List<String> firstKeyNames = Events.keyNames("1697000000000", 10);
+    List<String> secondKeyNames = Events.keyNames("1697000000001", 10);
+    storeCustomObjects(firstKeyNames, true);
+    storeCustomObjects(secondKeyNames, true);
+    storeManifest(getManifestKeyName(AGED.plusMinutes(1), "first"), firstKeyNames);
+    String lastManifestKeyName = storeManifest(getManifestKeyName(AGED, "second"), secondKeyNames);
+    FakeContext context = new FakeContext("delete");
+
+    invoke(context);
+
+    assertTrue(fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).isEmpty());
+    assertEquals(lastManifestKeyName, getCheckpoint());
+
+    // The input bucket is not listed, only the manifests
+    assertEquals(1, fakeAws.s3().getCallCount("ListObjectsV2"));
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    assertEquals(2L, invocationSpan.getAttributes().get(AttributeKey.longKey("manifest.consumed")));
+    assertEquals(20L, invocationSpan.getAttributes().get(AttributeKey.longKey("purge.deleted.objects")));
+  }
+
+  @Test
+  public void readsOnlyManifestsAfterCheckpoint() {
+    List<String> consumedKeyNames = Events.keyNames("1697000000000", 10);
+    List<String> newKeyNames = Events.keyNames("1697000000001", 10);
+    storeCustomObjects(consumedKeyNames, true);
+    storeCustomObjects(newKeyNames, true);
+    String consumedManifestKeyName = storeManifest(getManifestKeyName(AGED.plusMinutes(1), "consumed"), consumedKeyNames);
+    String newManifestKeyName = storeManifest(getManifestKeyName(AGED, "new"), newKeyNames);
+    fakeAws.s3().putObject(MANIFEST_S3_BUCKET_NAME, MANIFEST_CHECKPOINT_KEY, StoredObject.ofText(consumedManifestKeyName));
+
+    invoke(new FakeContext("delete"));
+
+    // The custom objects of the consumed manifest are not read again
+    Map<String, StoredObject> remainingObjects = fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME);
+    assertEquals(consumedKeyNames.size(), remainingObjects.size());
+    for (String keyName : consumedKeyNames)
+      assertTrue(remainingObjects.containsKey(keyName), keyName + " is purged.");
+
+    assertEquals(newManifestKeyName, getCheckpoint());
+  }
+
+  @Test
+  public void leavesManifestsWithinGracePeriod() {
+    List<String> keyNames = Events.keyNames("1697000000000", 10);
+    storeCustomObjects(keyNames, true);
+
+    // The manifest of the current minute may still be written
+    storeManifest(getManifestKeyName(Duration.ZERO, "current"), keyNames);
+    FakeContext context = new FakeContext("delete");
+
+    invoke(context);
+
+    assertEquals(keyNames.size(), fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).size());
+    assertNull(getCheckpoint());
+    assertEquals(0L, telemetry.getInvocationSpan(context).getAttributes().get(AttributeKey.longKey("manifest.consumed")));
+  }
+
+  @Test
+  public void requeuesRetainedCustomObjects() {
+    List<String> checkedKeyNames = Events.keyNames("1697000000000", 10);
+    List<String> uncheckedKeyNames = Events.keyNames("1697000000001", 5);
+    storeCustomObjects(checkedKeyNames, true);
+    storeCustomObjects(uncheckedKeyNames, false);
+
+    List<String> keyNames = new ArrayList<>(checkedKeyNames);
+    keyNames.addAll(uncheckedKeyNames);
+    String manifestKeyName = storeManifest(getManifestKeyName(AGED, "mixed"), keyNames);
+    FakeContext context = new FakeContext("delete");
+
+    invoke(context);
+
+    Map<String, StoredObject> remainingObjects = fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME);
+    assertEquals(uncheckedKeyNames.size(), remainingObjects.size());
+
+    // The retained custom objects are written into a new manifest with their
+    // creation time before the checkpoint is moved past the old one
+    assertEquals(manifestKeyName, getCheckpoint());
+
+    StoredObject requeueManifest = null;
+    for (Map.Entry<String, StoredObject> manifest : fakeAws.s3().getObjects(MANIFEST_S3_BUCKET_NAME).entrySet())
+      if (manifest.getKey().contains("/" + context.getAwsRequestId() + "-"))
+        requeueManifest = manifest.getValue();
+    assertNotNull(requeueManifest);
+
+    String[] lines = requeueManifest.getContentAsString().split("\n");
+    assertEquals(uncheckedKeyNames.size(), lines.length);
+    for (String line : lines) {
+      String[] fields = line.split("\t");
+      assertTrue(uncheckedKeyNames.contains(fields[0]), line);
+      assertEquals(Instant.now().minus(AGED).toEpochMilli(), Long.parseLong(fields[1]), Duration.ofMinutes(1).toMillis());
+    }
+  }
+
+  @Test
+  public void reportsCustomObjectsRetainedBeyondRequeueAge() {
+    List<String> uncheckedKeyNames = Events.keyNames("1697000000000", 5);
+    storeCustomObjects(uncheckedKeyNames, false);
+
+    String manifestKeyName = storeManifest(getManifestKeyName(Duration.ofDays(2), "stale"), uncheckedKeyNames);
+    FakeContext context = new FakeContext("delete");
+
+    invoke(context);
+
+    // The custom objects are kept for the expiration of the input bucket but
+    // are not requeued again
+    assertEquals(uncheckedKeyNames.size(), fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME).size());
+    assertEquals(manifestKeyName, getCheckpoint());
+    for (String storedManifestKeyName : fakeAws.s3().getObjects(MANIFEST_S3_BUCKET_NAME).keySet())
+      assertFalse(storedManifestKeyName.contains("/" + context.getAwsRequestId() + "-"), storedManifestKeyName);
+
+    SpanData span = telemetry.getInvocationSpan(context);
+    assertEquals(5L, span.getAttributes().get(AttributeKey.longKey("purge.retained.objects")));
+    assertEquals(5L, span.getAttributes().get(AttributeKey.longKey("purge.abandoned.objects")));
+  }
+
+  private Void invoke(
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(context));
+  }
+
+  private String getManifestKeyName(
+      Duration age,
+      String requestId) {
+    return "manifests/" + MANIFEST_MINUTE_FORMATTER.format(Instant.now().minus(age)) + "/" + requestId;
+  }
+
+  private String storeManifest(
+      String manifestKeyName,
+      List<String> keyNames) {
+    fakeAws.s3().putObject(MANIFEST_S3_BUCKET_NAME, manifestKeyName, StoredObject.ofText(String.join("\n", keyNames)));
+    return manifestKeyName;
+  }
+
+  private String getCheckpoint() {
+    StoredObject checkpoint = fakeAws.s3().getObject(MANIFEST_S3_BUCKET_NAME, MANIFEST_CHECKPOINT_KEY);
+    return checkpoint != null ? checkpoint.getContentAsString() : null;
+  }
+
+  // The delete decodes the codecs which need no native code only
+  private void storeCustomObjects(
+      List<String> keyNames,
+      boolean isChecked) {
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects
+        .of(new CustomObject("test", false, false), ContentEncodings.GZIP));
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects
+        .of(new CustomObject("test", true, isChecked), ContentEncodings.GZIP));
+  }
+}
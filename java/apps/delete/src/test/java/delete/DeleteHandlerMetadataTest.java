@@ -0,0 +1,98 @@
+package delete;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import delete.daos.CustomObject;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// The check keeps the check state in the metadata of the output objects,
+// which is set in the "metadata" execution of the surefire configuration.
+public class DeleteHandlerMetadataTest {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+
+  // Older than the minimum age of the purge policy
+  private static final Duration AGED = Duration.ofHours(1);
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static DeleteHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new DeleteHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void readsCheckStateFromMetadataOnly() {
+    List<String> checkedKeyNames = Events.keyNames("1697000000000", 20);
+    List<String> uncheckedKeyNames = Events.keyNames("1697000000001", 10);
+    List<String> missingKeyNames = Events.keyNames("1697000000002", 5);
+
+    storeInputCustomObjects(checkedKeyNames);
+    storeInputCustomObjects(uncheckedKeyNames);
+    storeInputCustomObjects(missingKeyNames);
+    storeOutputCustomObjects(checkedKeyNames, Map.of("is-checked", "true"));
+    storeOutputCustomObjects(uncheckedKeyNames, Map.of());
+
+    invoke(new FakeContext("delete"));
+
+    Map<String, StoredObject> remainingObjects = fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME);
+    assertEquals(uncheckedKeyNames.size() + missingKeyNames.size(), remainingObjects.size());
+    for (String keyName : checkedKeyNames)
+      assertTrue(!remainingObjects.containsKey(keyName), keyName + " is not purged.");
+
+    // The output objects are not downloaded
+    int candidates = checkedKeyNames.size() + uncheckedKeyNames.size() + missingKeyNames.size();
+    assertEquals(candidates, fakeAws.s3().getCallCount("HeadObject"));
+    assertEquals(0, fakeAws.s3().getCallCount("GetObject"));
+  }
+
+  private Void invoke(
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(context));
+  }
+
+  private void storeInputCustomObjects(
+      List<String> keyNames) {
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects
+        .of(new CustomObject("test", false, false), null)
+        .withLastModified(Instant.now().minus(AGED)));
+  }
+
+  private void storeOutputCustomObjects(
+      List<String> keyNames,
+      Map<String, String> metadata) {
+
+    // The body is never marked as checked in metadata mode
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects
+        .of(new CustomObject("test", true, false), null)
+        .withMetadata(metadata));
+  }
+}
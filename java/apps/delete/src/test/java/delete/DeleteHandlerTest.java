@@ -0,0 +1,201 @@
+package delete;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import delete.daos.CustomObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import testkit.BudgetTest;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.ContentEncodings;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+
+// The environment of the handler is set in the surefire configuration. The
+// purge policy is the one of Terraform, "age,checked".
+public class DeleteHandlerTest extends BudgetTest<Void> {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "LambdaDeleteEvent";
+
+  // Older than the minimum age of the purge policy
+  private static final Duration AGED = Duration.ofHours(1);
+
+  // Listing and deleting are done for up to 1000 objects per call
+  private static final int MAX_KEYS_PER_CALL = 1000;
+
+  // Checking the output counterpart
+  private static final int MAX_S3_CALLS_PER_OBJECT = 1;
+
+  // Bytes which the handler thread may allocate per object. The checks run
+  // on the pool of the purge policy and are not counted.
+  private static final long MAX_ALLOCATED_BYTES_PER_OBJECT = 64 * 1024;
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static DeleteHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new DeleteHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void purgesOnlyAgedAndCheckedObjects() {
+    List<String> checkedKeyNames = Events.keyNames("1697000000000", 20);
+    List<String> uncheckedKeyNames = Events.keyNames("1697000000001", 10);
+    List<String> recentKeyNames = Events.keyNames("1697000000002", 10);
+
+    storeInputCustomObjects(checkedKeyNames, Instant.now().minus(AGED));
+    storeInputCustomObjects(uncheckedKeyNames, Instant.now().minus(AGED));
+    storeInputCustomObjects(recentKeyNames, Instant.now());
+    storeOutputCustomObjects(checkedKeyNames, true);
+    storeOutputCustomObjects(uncheckedKeyNames, false);
+    storeOutputCustomObjects(recentKeyNames, true);
+    FakeContext context = new FakeContext("delete");
+
+    invoke(context);
+
+    Map<String, StoredObject> remainingObjects = fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME);
+    assertEquals(uncheckedKeyNames.size() + recentKeyNames.size(), remainingObjects.size());
+    for (String keyName : checkedKeyNames)
+      assertTrue(!remainingObjects.containsKey(keyName), keyName + " is not purged.");
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    assertEquals(20L, invocationSpan.getAttributes().get(AttributeKey.longKey("purge.deleted.objects")));
+    assertEquals(20L, invocationSpan.getAttributes().get(AttributeKey.longKey("purge.retained.objects")));
+
+    List<EventData> events = telemetry.getEvents(CUSTOM_OTEL_SPAN_EVENT_NAME);
+    assertEquals(1, events.size());
+    assertEquals(true, events.get(0).getAttributes().get(AttributeKey.booleanKey("is.successful")));
+    assertEquals(INPUT_S3_BUCKET_NAME, events.get(0).getAttributes().get(AttributeKey.stringKey("bucket.id")));
+  }
+
+  @Test
+  public void tracesStagesAsChildSpans() {
+    FakeContext context = new FakeContext("delete");
+
+    invoke(context);
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    for (String spanName : List.of("delete.fetch", "delete.evaluate", "delete.delete")) {
+      List<SpanData> spans = telemetry.getFinishedSpans(spanName);
+      assertEquals(1, spans.size(), spanName);
+      assertEquals(invocationSpan.getSpanId(), spans.get(0).getParentSpanId());
+    }
+  }
+
+  @Test
+  public void listsOnlyIfBucketIsEmpty() {
+    invoke(new FakeContext("delete"));
+
+    assertEquals(1, fakeAws.s3().getCallCount("ListObjectsV2"));
+    assertEquals(1, fakeAws.s3().getCallCount());
+  }
+
+  @Override
+  protected String getFunctionName() {
+    return "delete";
+  }
+
+  @Override
+  protected Supplier<Void> prepareInvocation(
+      List<String> keyNames,
+      FakeContext context) {
+
+    storeInputCustomObjects(keyNames, Instant.now().minus(AGED));
+    storeOutputCustomObjects(keyNames, true);
+    return () -> invoke(context);
+  }
+
+  @Override
+  protected void assertProcessed(
+      Void result,
+      List<String> keyNames) {
+
+    Map<String, StoredObject> remainingObjects = fakeAws.s3().getObjects(INPUT_S3_BUCKET_NAME);
+    for (String keyName : keyNames)
+      assertTrue(!remainingObjects.containsKey(keyName), keyName + " is not purged.");
+  }
+
+  @Override
+  protected int getCallBudgetItemCount() {
+    return 2500;
+  }
+
+  @Override
+  protected int getMaxS3Calls(
+      int itemCount) {
+    return 2 * getPages(itemCount) + itemCount * MAX_S3_CALLS_PER_OBJECT;
+  }
+
+  @Override
+  protected void assertCalls(
+      FakeAws fakeAws,
+      int itemCount) {
+    assertEquals(getPages(itemCount), fakeAws.s3().getCallCount("ListObjectsV2"));
+    assertEquals(getPages(itemCount), fakeAws.s3().getCallCount("DeleteObjects"));
+  }
+
+  @Override
+  protected int getAllocationBudgetItemCount() {
+    return 2000;
+  }
+
+  @Override
+  protected long getMaxAllocatedBytesPerItem() {
+    return MAX_ALLOCATED_BYTES_PER_OBJECT;
+  }
+
+  private static int getPages(
+      int itemCount) {
+    return (itemCount + MAX_KEYS_PER_CALL - 1) / MAX_KEYS_PER_CALL;
+  }
+
+  private Void invoke(
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(context));
+  }
+
+  // The delete decodes the codecs which need no native code only
+  private void storeInputCustomObjects(
+      List<String> keyNames,
+      Instant lastModified) {
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects
+        .of(new CustomObject("test", false, false), ContentEncodings.GZIP)
+        .withLastModified(lastModified));
+  }
+
+  private void storeOutputCustomObjects(
+      List<String> keyNames,
+      boolean isChecked) {
+    fakeAws.s3().putObjects(OUTPUT_S3_BUCKET_NAME, keyNames, CustomObjects
+        .of(new CustomObject("test", true, isChecked), ContentEncodings.GZIP));
+  }
+}
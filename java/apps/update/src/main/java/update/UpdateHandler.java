@@ -3,14 +3,20 @@ package update;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
@@ -20,17 +26,32 @@ import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.google.gson.Gson;
 
-import software.amazon.awssdk.core.ResponseBytes;
+import common.codec.StorageCodec;
+import common.deadline.Deadline;
+import common.faults.FaultInjector;
+import common.faults.SqsFaultInjectionRequestHandler;
+import common.resilience.ResiliencePolicy;
+import common.resilience.SqsResiliencePolicy;
+import common.tracing.StageTracer;
+import common.tracing.StageTracer.Stage;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.SdkSystemSetting;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.http.ContentStreamProvider;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import update.daos.CustomObject;
+import update.tracing.SqsTraceContext;
 
 public class UpdateHandler implements RequestHandler<S3Event, Void> {
 
@@ -43,23 +64,80 @@ public class UpdateHandler implements RequestHandler<S3Event, Void> {
 
   private static String OUTPUT_S3_BUCKET_NAME;
   private static String SQS_QUEUE_URL;
+  private static String UPDATE_MODE;
+  private static StorageCodec STORAGE_CODEC;
   private static final String SQS_MESSAGE_GROUP_ID = "otel";
 
+  // In metadata mode, the custom object is copied server-side from the input
+  // to the output bucket and its update state is kept as object metadata
+  // instead of being rewritten into the JSON body.
+  private static final String UPDATE_MODE_METADATA = "metadata";
+  private static final String CUSTOM_OBJECT_METADATA_IS_UPDATED = "is-updated";
+
+  // Time which is kept free at the end of the invocation for ending the span
+  // and flushing the telemetry. It is parsed once per container.
+  private static final long DEADLINE_RESERVE_MILLIS = Deadline.getReserveMillisFromEnv();
+  private static boolean DEADLINE_STOP_ON_EXHAUSTION;
+
   private Gson gson = new Gson();
 
-  private final static S3Client s3Client;
-  private final static AmazonSQS sqs;
+  // Traces the stages of every record with the same tracer
+  private final static StageTracer stageTracer = StageTracer.fromEnv("update");
 
-  static {
-    final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
-    final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+  // The clients are built on their first use instead of in the static
+  // initializer so that each SDK is only loaded once it is needed
+  private static class S3ClientHolder {
 
-    s3Client = S3Client.builder()
-        .httpClient(UrlConnectionHttpClient.builder().build())
-        .region(awsRegion)
-        .build();
+    private static final S3Client s3Client;
+
+    static {
+      final String region = System.getenv(SdkSystemSetting.AWS_REGION.environmentVariable());
+      final Region awsRegion = region != null ? Region.of(region) : Region.EU_WEST_1;
+
+      // Wrap the client with the retry and circuit breaker policy
+      final ResiliencePolicy resiliencePolicy = ResiliencePolicy.fromEnv();
+
+      // Inject faults into the client if enabled
+      final FaultInjector faultInjector = FaultInjector.fromEnv("s3");
 
-    sqs = AmazonSQSClientBuilder.defaultClient();
+      s3Client = S3Client.builder()
+          .httpClient(UrlConnectionHttpClient.builder().build())
+          .region(awsRegion)
+          .overrideConfiguration(faultInjector.applyTo(resiliencePolicy.getClientOverrideConfiguration("s3")))
+          .build();
+    }
+  }
+
+  private static class SqsClientHolder {
+
+    private static final AmazonSQS sqs;
+
+    static {
+      // Wrap the client with the retry and circuit breaker policy
+      final SqsResiliencePolicy resiliencePolicy = new SqsResiliencePolicy(ResiliencePolicy.fromEnv());
+
+      // Inject faults into the client if enabled
+      final FaultInjector faultInjector = FaultInjector.fromEnv("sqs");
+
+      List<RequestHandler2> sqsRequestHandlers = new ArrayList<>();
+      if (resiliencePolicy.isEnabled())
+        sqsRequestHandlers.add(resiliencePolicy.getRequestHandler("sqs"));
+      if (faultInjector.isEnabled())
+        sqsRequestHandlers.add(new SqsFaultInjectionRequestHandler(faultInjector));
+
+      sqs = AmazonSQSClientBuilder.standard()
+          .withClientConfiguration(resiliencePolicy.getClientConfiguration("sqs"))
+          .withRequestHandlers(sqsRequestHandlers.toArray(new RequestHandler2[0]))
+          .build();
+    }
+  }
+
+  private static S3Client getS3Client() {
+    return S3ClientHolder.s3Client;
+  }
+
+  private static AmazonSQS getSqsClient() {
+    return SqsClientHolder.sqs;
   }
 
   @Override
@@ -67,36 +145,70 @@ public class UpdateHandler implements RequestHandler<S3Event, Void> {
       S3Event input,
       Context context) {
 
-    try {
-      // Parse environment variables
-      parseEnvVars();
+    // Parse environment variables
+    parseEnvVars();
 
-      // Check if there are any records
-      if (input.getRecords().isEmpty()) {
-        logger.info("No records are found in S3 event.");
-        return null;
+    // Start the latency budget of this invocation
+    Deadline deadline = new Deadline(context, DEADLINE_RESERVE_MILLIS);
+
+    // Check if there are any records
+    if (input.getRecords().isEmpty()) {
+      logger.info("No records are found in S3 event.");
+      return null;
+    }
+
+    int unprocessedRecords = 0;
+    for (S3EventNotificationRecord record : input.getRecords()) {
+
+      // Do not start new records if the budget is nearly exhausted
+      if (DEADLINE_STOP_ON_EXHAUSTION && deadline.isExhausted()) {
+        logger.error("Latency budget is exhausted! Skipping custom object: " + record.getS3().getObject().getKey());
+        unprocessedRecords++;
+        continue;
       }
 
-      // Get the record
-      S3EventNotificationRecord record = input.getRecords().get(0);
+      updateRecord(deadline, record);
+    }
 
-      // Create the custom object from input bucket
-      String customObjectAsString = getCustomObjectFromInputS3(record);
+    // Fail the invocation with the records which are not processed, so that
+    // the asynchronous invocation is retried. The update is idempotent, so
+    // the processed records are updated again.
+    if (unprocessedRecords > 0) {
+      enrichSpanWithDeadlineExhaustion(deadline, unprocessedRecords);
+      throw new RuntimeException("Latency budget is exhausted! Skipped " + unprocessedRecords + " records.");
+    }
 
-      // Update custom object
-      String customObjectUpdatedAsString = updateCustomObject(customObjectAsString);
+    return null;
+  }
 
-      // Store the custom object in S3
-      storeCustomObjectInOutputS3(record.getS3().getObject().getKey(), customObjectUpdatedAsString);
+  private void updateRecord(
+      Deadline deadline,
+      S3EventNotificationRecord record) {
+
+    try {
+      if (UPDATE_MODE_METADATA.equals(UPDATE_MODE)) {
+        // Copy the custom object into output bucket and mark it as updated
+        stageTracer.trace(Stage.STORE, () -> copyCustomObjectToOutputS3AsUpdated(deadline, record));
+      } else {
+        // Create the custom object from input bucket
+        CustomObject customObject = stageTracer.trace(Stage.FETCH,
+            () -> getCustomObjectFromInputS3(deadline, record));
+
+        // Update custom object
+        String customObjectUpdatedAsString = stageTracer.trace(Stage.TRANSFORM,
+            () -> updateCustomObject(customObject));
+
+        // Store the custom object in S3
+        stageTracer.trace(Stage.STORE,
+            () -> storeCustomObjectInOutputS3(deadline, record.getS3().getObject().getKey(), customObjectUpdatedAsString));
+      }
 
       // Send custom object to SQS
-      sendCustomObjectS3InfoToSqs(record);
+      stageTracer.trace(Stage.NOTIFY, () -> sendCustomObjectS3InfoToSqs(deadline, record));
 
       logger.info("Updating custom object is succeeded.");
-      return null;
     } catch (Exception e) {
       logger.info("Updating custom object is failed!: " + e);
-      return null;
     }
   }
 
@@ -104,11 +216,16 @@ public class UpdateHandler implements RequestHandler<S3Event, Void> {
     logger.info("Parsing env vars...");
     OUTPUT_S3_BUCKET_NAME = System.getenv("OUTPUT_S3_BUCKET_NAME");
     SQS_QUEUE_URL = System.getenv("SQS_QUEUE_URL");
+    UPDATE_MODE = System.getenv("UPDATE_MODE");
+    STORAGE_CODEC = StorageCodec.fromName(System.getenv("STORAGE_CODEC"));
+
+    DEADLINE_STOP_ON_EXHAUSTION = Boolean.parseBoolean(System.getenv("DEADLINE_STOP_ON_EXHAUSTION"));
     logger.info("Parsing env vars is succeeded.");
   }
 
-  private String getCustomObjectFromInputS3(
-      S3EventNotificationRecord record) {
+  private CustomObject getCustomObjectFromInputS3(
+      Deadline deadline,
+      S3EventNotificationRecord record) throws IOException {
 
     logger.info("Getting custom object from the input S3...");
 
@@ -121,55 +238,102 @@ public class UpdateHandler implements RequestHandler<S3Event, Void> {
         .builder()
         .bucket(bucket)
         .key(key)
+        .overrideConfiguration(deadline.getOverrideConfiguration())
         .build();
 
-    // Get custom object as bytes
-    ResponseBytes<GetObjectResponse> responseBytes = s3Client.getObjectAsBytes(getObjectRequest);
-    byte[] customObjectAsBytes = responseBytes.asByteArray();
+    // Get custom object as stream and parse it while decoding it with the
+    // codec which it is stored with
+    try (ResponseInputStream<GetObjectResponse> responseStream = getS3Client().getObject(getObjectRequest)) {
+      StorageCodec codec = StorageCodec.fromContentEncoding(responseStream.response().contentEncoding());
+      Reader reader = new InputStreamReader(codec.decode(responseStream), StandardCharsets.UTF_8);
+      CustomObject customObject = gson.fromJson(reader, CustomObject.class);
 
-    logger.info("Getting custom object from the input S3 is succedeed.");
-
-    // Parse as string and return
-    return new String(customObjectAsBytes, StandardCharsets.UTF_8);
+      logger.info("Getting custom object from the input S3 is succedeed.");
+      return customObject;
+    }
   }
 
   private String updateCustomObject(
-      String customObjectAsString) {
-    CustomObject customObject = gson.fromJson(customObjectAsString, CustomObject.class);
+      CustomObject customObject) {
     customObject.setIsUpdated(true);
 
     return gson.toJson(customObject);
   }
 
   private void storeCustomObjectInOutputS3(
+      Deadline deadline,
       String key,
-      String customObjectString) {
+      String customObjectString) throws IOException {
 
     logger.info("Updating custom object in output S3...");
 
     // Get byte array stream of string
     ByteArrayOutputStream jsonByteStream = getByteArrayOutputStream(customObjectString);
 
-    // Prepare an InputStream from the ByteArrayOutputStream
-    InputStream fis = new ByteArrayInputStream(jsonByteStream.toByteArray());
+    // Encode with the codec of this function
+    byte[] customObjectAsBytes = STORAGE_CODEC.encode(jsonByteStream.toByteArray());
 
     // Put file into S3
-    s3Client.putObject(
+    getS3Client().putObject(
         PutObjectRequest
             .builder()
             .bucket(OUTPUT_S3_BUCKET_NAME)
             .key(String.valueOf(key))
+            .contentEncoding(STORAGE_CODEC.getContentEncoding())
+            .overrideConfiguration(deadline.getOverrideConfiguration())
             .build(),
         RequestBody.fromContentProvider(new ContentStreamProvider() {
           @Override
           public InputStream newStream() {
-            return fis;
+            // A new stream is needed for every retry of the request
+            return new ByteArrayInputStream(customObjectAsBytes);
           }
-        }, jsonByteStream.toByteArray().length, "application/json"));
+        }, customObjectAsBytes.length, "application/json"));
 
     logger.info("Updating custom object in output S3 is succedeed.");
   }
 
+  private void copyCustomObjectToOutputS3AsUpdated(
+      Deadline deadline,
+      S3EventNotificationRecord record) {
+
+    logger.info("Copying custom object from input S3 to output S3 as updated...");
+
+    // Get bucket name and object key
+    String bucket = record.getS3().getBucket().getName();
+    String key = record.getS3().getObject().getKey();
+
+    // Get the content headers and the metadata without downloading the object
+    HeadObjectResponse headObjectResponse = getS3Client().headObject(
+        HeadObjectRequest
+            .builder()
+            .bucket(bucket)
+            .key(key)
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build());
+
+    Map<String, String> metadata = new HashMap<>(headObjectResponse.metadata());
+    metadata.put(CUSTOM_OBJECT_METADATA_IS_UPDATED, "true");
+
+    // Copy the object server-side so that its payload never transits the Lambda.
+    // Replacing the metadata requires the content headers to be set again.
+    getS3Client().copyObject(
+        CopyObjectRequest
+            .builder()
+            .sourceBucket(bucket)
+            .sourceKey(key)
+            .destinationBucket(OUTPUT_S3_BUCKET_NAME)
+            .destinationKey(key)
+            .metadataDirective(MetadataDirective.REPLACE)
+            .metadata(metadata)
+            .contentType(headObjectResponse.contentType())
+            .contentEncoding(headObjectResponse.contentEncoding())
+            .overrideConfiguration(deadline.getOverrideConfiguration())
+            .build());
+
+    logger.info("Copying custom object from input S3 to output S3 as updated is succeeded.");
+  }
+
   private ByteArrayOutputStream getByteArrayOutputStream(
       String data) throws RuntimeException {
 
@@ -187,6 +351,7 @@ public class UpdateHandler implements RequestHandler<S3Event, Void> {
   }
 
   private void sendCustomObjectS3InfoToSqs(
+      Deadline deadline,
       S3EventNotificationRecord record) {
 
     logger.info("Sending S3 info of the updated custom object to SQS...");
@@ -201,13 +366,26 @@ public class UpdateHandler implements RequestHandler<S3Event, Void> {
     // Convert to string
     String json = gson.toJson(message);
 
-    // Send updated custom object to SQS queue
+    // Send updated custom object to SQS queue together with the trace context
+    // so that the check can be linked to this update
     SendMessageRequest req = new SendMessageRequest()
         .withMessageGroupId(SQS_MESSAGE_GROUP_ID)
         .withQueueUrl(SQS_QUEUE_URL)
-        .withMessageBody(json);
-    sqs.sendMessage(req);
+        .withMessageBody(json)
+        .withMessageAttributes(SqsTraceContext.getMessageAttributes())
+        .withSdkClientExecutionTimeout((int) deadline.getApiCallTimeout().toMillis());
+    getSqsClient().sendMessage(req);
 
     logger.info("Sending S3 info of the updated custom object to SQS is succeeded.");
   }
+
+  private void enrichSpanWithDeadlineExhaustion(
+      Deadline deadline,
+      int unprocessedRecords) {
+
+    Span span = Span.current();
+    span.setAttribute(AttributeKey.booleanKey("deadline.exhausted"), true);
+    span.setAttribute(AttributeKey.longKey("deadline.remaining.ms"), deadline.getRemainingMillis());
+    span.setAttribute(AttributeKey.longKey("deadline.unprocessed.records"), (long) unprocessedRecords);
+  }
 }
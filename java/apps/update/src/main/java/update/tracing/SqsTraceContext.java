@@ -0,0 +1,42 @@
+package update.tracing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapSetter;
+
+public final class SqsTraceContext {
+
+  // Time at which the message is sent in epoch millis so that the consumer
+  // can compute how long the message waited in the queue
+  public static final String SENT_TIMESTAMP_MESSAGE_ATTRIBUTE = "sent.timestamp";
+
+  private static final TextMapSetter<Map<String, MessageAttributeValue>> SETTER = (carrier, key, value) -> carrier.put(
+      key,
+      new MessageAttributeValue()
+          .withDataType("String")
+          .withStringValue(value));
+
+  private SqsTraceContext() {
+  }
+
+  public static Map<String, MessageAttributeValue> getMessageAttributes() {
+
+    Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+
+    // Inject the W3C traceparent (and tracestate) of the current span
+    W3CTraceContextPropagator.getInstance().inject(Context.current(), messageAttributes, SETTER);
+
+    messageAttributes.put(
+        SENT_TIMESTAMP_MESSAGE_ATTRIBUTE,
+        new MessageAttributeValue()
+            .withDataType("Number")
+            .withStringValue(String.valueOf(System.currentTimeMillis())));
+
+    return messageAttributes;
+  }
+}
@@ -0,0 +1,76 @@
+package update;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+import testkit.aws.StoredObject;
+import update.daos.CustomObject;
+
+// The update marks the custom objects as updated in their metadata, which is
+// set in the "metadata" execution of the surefire configuration.
+public class UpdateHandlerMetadataTest {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static UpdateHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new UpdateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void copiesCustomObjectsWithUpdatedMetadata() {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    StoredObject inputObject = CustomObjects.of(new CustomObject("test", false, false))
+        .withMetadata(Map.of("source", "create"));
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, inputObject);
+    FakeContext context = new FakeContext("update");
+
+    telemetry.invoke(context, () -> handler.handleRequest(Events.s3Event(INPUT_S3_BUCKET_NAME, keyNames), context));
+
+    // The payload is copied as it is, with the content headers and the
+    // metadata of the input object
+    for (String keyName : keyNames) {
+      StoredObject object = fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyName);
+      assertNotNull(object, keyName + " is not updated.");
+      assertArrayEquals(inputObject.getContent(), object.getContent());
+      assertEquals(inputObject.getContentEncoding(), object.getContentEncoding());
+      assertEquals(Map.of("source", "create", "is-updated", "true"), object.getMetadata());
+    }
+
+    // The payload never transits the Lambda
+    assertEquals(count, fakeAws.s3().getCallCount("HeadObject"));
+    assertEquals(count, fakeAws.s3().getCallCount("CopyObject"));
+    assertEquals(0, fakeAws.s3().getCallCount("GetObject"));
+    assertEquals(0, fakeAws.s3().getCallCount("PutObject"));
+    assertEquals(count, fakeAws.sqs().getSentMessages().size());
+  }
+}
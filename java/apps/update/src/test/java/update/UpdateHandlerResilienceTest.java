@@ -0,0 +1,75 @@
+package update;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.EventData;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.FakeAws;
+import update.daos.CustomObject;
+
+// Faults are injected into the messages to SQS and retried by the resilience
+// layer, which is set in the "resilience" execution of the surefire
+// configuration. The S3 requests are not affected.
+public class UpdateHandlerResilienceTest {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static UpdateHandler handler;
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new UpdateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void retriesInjectedFaultsOfMessages() {
+    int count = 20;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", false, false)));
+    FakeContext context = new FakeContext("update");
+
+    telemetry.invoke(context, () -> handler.handleRequest(Events.s3Event(INPUT_S3_BUCKET_NAME, keyNames), context));
+
+    List<EventData> faultEvents = telemetry.getEvents("FaultInjected");
+    assertFalse(faultEvents.isEmpty());
+    for (EventData event : faultEvents)
+      assertEquals("SendMessage", event.getAttributes().get(AttributeKey.stringKey("aws.operation")));
+
+    // Every injected fault fails an attempt and is retried within the retry
+    // budget
+    List<EventData> retryEvents = telemetry.getEvents("RetryDecision");
+    assertEquals(faultEvents.size(), retryEvents.size());
+    for (EventData event : retryEvents) {
+      assertEquals("sqs", event.getAttributes().get(AttributeKey.stringKey("retry.client")));
+      assertEquals(true, event.getAttributes().get(AttributeKey.booleanKey("retry.decision")));
+    }
+
+    // The injected faults never reach SQS, so every message is sent once
+    assertEquals(count, fakeAws.sqs().getSentMessages().size());
+    assertEquals(count, fakeAws.sqs().getCallCount());
+    assertEquals(0, telemetry.getEvents("CircuitBreakerTransition").size());
+  }
+}
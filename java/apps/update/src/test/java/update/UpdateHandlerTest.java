@@ -0,0 +1,193 @@
+package update;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.google.gson.Gson;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import testkit.BudgetTest;
+import testkit.CustomObjects;
+import testkit.Events;
+import testkit.FakeContext;
+import testkit.InMemoryTelemetry;
+import testkit.aws.ContentEncodings;
+import testkit.aws.FakeAws;
+import testkit.aws.SentMessage;
+import testkit.aws.StoredObject;
+import update.daos.CustomObject;
+
+// The environment of the handler is set in the surefire configuration, where
+// every storage codec is tested in its own execution
+public class UpdateHandlerTest extends BudgetTest<Void> {
+
+  private static final String INPUT_S3_BUCKET_NAME = "input";
+  private static final String OUTPUT_S3_BUCKET_NAME = "output";
+
+  // Fetching and storing the custom object
+  private static final int MAX_S3_CALLS_PER_RECORD = 2;
+
+  // Notifying the check
+  private static final int MAX_SQS_CALLS_PER_RECORD = 1;
+
+  // Bytes which the handler thread may allocate per record
+  private static final long MAX_ALLOCATED_BYTES_PER_RECORD = 2 * 1024 * 1024;
+
+  private static InMemoryTelemetry telemetry;
+  private static FakeAws fakeAws;
+  private static UpdateHandler handler;
+
+  private final Gson gson = new Gson();
+
+  @BeforeAll
+  public static void setUpAll() throws IOException {
+    // The telemetry has to be installed before the handler class is loaded
+    telemetry = InMemoryTelemetry.install();
+    fakeAws = FakeAws.start();
+    handler = new UpdateHandler();
+  }
+
+  @BeforeEach
+  public void setUp() {
+    telemetry.reset();
+    fakeAws.reset();
+  }
+
+  @Test
+  public void updatesCustomObjectsAndNotifiesCheck() {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", false, false)));
+    FakeContext context = new FakeContext("update");
+
+    invoke(Events.s3Event(INPUT_S3_BUCKET_NAME, keyNames), context);
+
+    for (String keyName : keyNames) {
+      StoredObject object = fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyName);
+      assertNotNull(object, keyName + " is not updated.");
+      assertEquals(ContentEncodings.ofStorageCodec(), object.getContentEncoding());
+      assertTrue(CustomObjects.decode(object, CustomObject.class).getIsUpdated());
+    }
+
+    // Every message carries the trace context of the invocation
+    String traceId = telemetry.getInvocationSpan(context).getTraceId();
+    List<SentMessage> sentMessages = fakeAws.sqs().getSentMessages();
+    assertEquals(count, sentMessages.size());
+    for (SentMessage sentMessage : sentMessages) {
+      @SuppressWarnings("unchecked")
+      Map<String, String> message = gson.fromJson(sentMessage.getBody(), Map.class);
+      assertEquals(OUTPUT_S3_BUCKET_NAME, message.get("bucket"));
+      assertTrue(keyNames.contains(message.get("key")));
+      assertTrue(sentMessage.getMessageAttributes().get("traceparent").contains(traceId));
+      assertNotNull(sentMessage.getMessageAttributes().get("sent.timestamp"));
+    }
+  }
+
+  @Test
+  public void tracesStagesOfEveryRecord() {
+    int count = 5;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", false, false)));
+    FakeContext context = new FakeContext("update");
+
+    invoke(Events.s3Event(INPUT_S3_BUCKET_NAME, keyNames), context);
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    for (String spanName : List.of("update.fetch", "update.transform", "update.store", "update.notify")) {
+      List<SpanData> spans = telemetry.getFinishedSpans(spanName);
+      assertEquals(count, spans.size(), spanName);
+      for (SpanData span : spans)
+        assertEquals(invocationSpan.getSpanId(), span.getParentSpanId());
+    }
+  }
+
+  @Test
+  public void skipsRecordsIfDeadlineIsExhausted() {
+    int count = 10;
+    List<String> keyNames = Events.keyNames("1697000000000", count);
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", false, false)));
+
+    // Less than the reserve of the deadline is left
+    FakeContext context = new FakeContext("update").withRemainingTimeInMillis(500);
+
+    // The invocation fails, so that the skipped records are redelivered
+    S3Event event = Events.s3Event(INPUT_S3_BUCKET_NAME, keyNames);
+    assertThrows(RuntimeException.class, () -> invoke(event, context));
+
+    assertEquals(0, fakeAws.s3().getCallCount());
+    assertEquals(0, fakeAws.sqs().getCallCount());
+
+    SpanData invocationSpan = telemetry.getInvocationSpan(context);
+    assertEquals(true, invocationSpan.getAttributes().get(AttributeKey.booleanKey("deadline.exhausted")));
+    assertEquals((long) count, invocationSpan.getAttributes().get(AttributeKey.longKey("deadline.unprocessed.records")));
+  }
+
+  @Override
+  protected String getFunctionName() {
+    return "update";
+  }
+
+  @Override
+  protected Supplier<Void> prepareInvocation(
+      List<String> keyNames,
+      FakeContext context) {
+
+    fakeAws.s3().putObjects(INPUT_S3_BUCKET_NAME, keyNames, CustomObjects.of(new CustomObject("test", false, false)));
+    S3Event event = Events.s3Event(INPUT_S3_BUCKET_NAME, keyNames);
+    return () -> invoke(event, context);
+  }
+
+  @Override
+  protected void assertProcessed(
+      Void result,
+      List<String> keyNames) {
+    for (String keyName : keyNames)
+      assertNotNull(fakeAws.s3().getObject(OUTPUT_S3_BUCKET_NAME, keyName), keyName + " is not updated.");
+  }
+
+  @Override
+  protected int getCallBudgetItemCount() {
+    return 50;
+  }
+
+  @Override
+  protected int getMaxS3Calls(
+      int itemCount) {
+    return itemCount * MAX_S3_CALLS_PER_RECORD;
+  }
+
+  @Override
+  protected int getMaxSqsCalls(
+      int itemCount) {
+    return itemCount * MAX_SQS_CALLS_PER_RECORD;
+  }
+
+  @Override
+  protected int getAllocationBudgetItemCount() {
+    return 20;
+  }
+
+  @Override
+  protected long getMaxAllocatedBytesPerItem() {
+    return MAX_ALLOCATED_BYTES_PER_RECORD;
+  }
+
+  private Void invoke(
+      S3Event event,
+      FakeContext context) {
+    return telemetry.invoke(context, () -> handler.handleRequest(event, context));
+  }
+}
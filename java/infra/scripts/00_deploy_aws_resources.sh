@@ -20,6 +20,10 @@ done
 if [[ $flagDestroy != "true" ]]; then
 
   ### Build jar files
+  # The functions share the common library and their tests run against the
+  # testkit
+  mvn clean install -f ../../libs/common/pom.xml
+  mvn clean install -f ../../tools/testkit/pom.xml
   mvn clean install package -f ../../apps/create/pom.xml
   mvn clean install package -f ../../apps/update/pom.xml
   mvn clean install package -f ../../apps/delete/pom.xml
@@ -0,0 +1,101 @@
+#!/bin/bash
+
+# Measures the init duration and the memory usage of the Lambda functions
+# over a number of cold starts. Every cold start is forced by updating the
+# description of the functions which replaces their execution environments.
+#
+# Deploy with the settings to compare first, for example:
+#   export TF_VAR_LAMBDA_MEMORY_SIZE=256
+#   export TF_VAR_LAMBDA_JAVA_TOOL_OPTIONS=""
+#   bash 00_deploy_aws_resources.sh
+#
+# No results are recorded yet, so LAMBDA_MEMORY_SIZE keeps its default of
+# 512 MB. To size it, run the script for the default and for a lower size,
+# and lower the default only if the init duration does not grow and the max
+# memory used of every function leaves headroom within the lower size.
+
+# Get commandline arguments
+coldStarts=10
+while (( "$#" )); do
+  case "$1" in
+    --cold-starts)
+      coldStarts="$2"
+      shift
+      ;;
+    *)
+      shift
+      ;;
+  esac
+done
+
+functionNames=(
+  "java-lambda-create-otel"
+  "java-lambda-update-otel"
+  "java-lambda-delete-otel"
+  "java-lambda-check-otel"
+)
+
+startTime=$(date +%s)
+
+for i in $(seq 1 $coldStarts); do
+  echo "Cold start ${i}/${coldStarts}..."
+
+  # Replace the execution environments
+  for functionName in "${functionNames[@]}"; do
+    aws lambda update-function-configuration \
+      --function-name $functionName \
+      --description "cold-start-${startTime}-${i}" \
+      > /dev/null
+    aws lambda wait function-updated --function-name $functionName
+  done
+
+  # Create a custom object which triggers the update and the check
+  aws lambda invoke \
+    --function-name "java-lambda-create-otel" \
+    --cli-binary-format raw-in-base64-out \
+    --payload '{}' \
+    /dev/null > /dev/null
+
+  # Wait for the update and the check before cleaning up
+  sleep 15
+
+  aws lambda invoke \
+    --function-name "java-lambda-delete-otel" \
+    --cli-binary-format raw-in-base64-out \
+    --payload '{}' \
+    /dev/null > /dev/null
+done
+
+# Wait for the REPORT lines to be ingested
+sleep 30
+
+query='filter @type = "REPORT" and ispresent(@initDuration)
+  | stats count(*) as coldStarts,
+    pct(@initDuration, 50) as initP50,
+    pct(@initDuration, 99) as initP99,
+    pct(@duration, 50) as durationP50,
+    max(@maxMemoryUsed / 1000 / 1000) as maxMemoryUsedMB,
+    max(@memorySize / 1000 / 1000) as memorySizeMB'
+
+for functionName in "${functionNames[@]}"; do
+  queryId=$(aws logs start-query \
+    --log-group-name "/aws/lambda/${functionName}" \
+    --start-time $startTime \
+    --end-time $(date +%s) \
+    --query-string "$query" \
+    --output text \
+    --query "queryId")
+
+  # Wait for the query to complete
+  status="Running"
+  while [[ $status == "Running" || $status == "Scheduled" ]]; do
+    sleep 1
+    status=$(aws logs get-query-results --query-id $queryId --output text --query "status")
+  done
+
+  echo "--- ${functionName} ---"
+  aws logs get-query-results \
+    --query-id $queryId \
+    --output text \
+    --query "results[].[join(': ', [field, value])]"
+done
@@ -11,3 +11,17 @@ variable "AWS_REGION" {
 variable "NEWRELIC_LICENSE_KEY" {
   type = string
 }
+
+# Memory of the Lambda functions in MB. The default is not sized from
+# measurements yet, see scripts/01_measure_cold_starts.sh.
+variable "LAMBDA_MEMORY_SIZE" {
+  type    = number
+  default = 512
+}
+
+# JVM options of the Lambda functions. The C1 compiler only and the serial
+# GC keep the footprint and the init duration of the short-lived JVMs low.
+variable "LAMBDA_JAVA_TOOL_OPTIONS" {
+  type    = string
+  default = "-XX:+TieredCompilation -XX:TieredStopAtLevel=1 -XX:+UseSerialGC"
+}
@@ -4,6 +4,13 @@ locals {
   input_s3_bucket_name  = "utr1903-input-monitoring-lambda-with-opentelemetry-java"
   output_s3_bucket_name = "utr1903-output-monitoring-lambda-with-opentelemetry-java"
 
+  # Manifests of the keys which the create writes into the input bucket
+  manifest_s3_bucket_name = "utr1903-manifest-monitoring-lambda-with-opentelemetry-java"
+
+  # Where the check keeps the check state, "body" or "metadata". The delete
+  # reads it from the same place.
+  check_mode = "body"
+
   # SQS
   sqs_queue_name = "java-sqs-queue.fifo"
 
@@ -12,4 +12,47 @@ resource "aws_s3_bucket" "output" {
   bucket = local.output_s3_bucket_name
 
   force_destroy = true
-}
\ No newline at end of file
+}
+
+resource "aws_s3_bucket" "manifest" {
+  bucket = local.manifest_s3_bucket_name
+
+  force_destroy = true
+}
+
+# Consumed manifests are not deleted by the delete but expire
+resource "aws_s3_bucket_lifecycle_configuration" "manifest" {
+  bucket = aws_s3_bucket.manifest.id
+
+  rule {
+    id     = "expire-manifests"
+    status = "Enabled"
+
+    filter {
+      prefix = "manifests/"
+    }
+
+    expiration {
+      days = 7
+    }
+  }
+}
+
+# Custom objects which the manifest delete retains for longer than its
+# requeue age of 1 day are given up on and expire. The expiration is well
+# beyond the requeue age so that it never hits an object which is still to be
+# updated or checked.
+resource "aws_s3_bucket_lifecycle_configuration" "input" {
+  bucket = aws_s3_bucket.input.id
+
+  rule {
+    id     = "expire-abandoned-custom-objects"
+    status = "Enabled"
+
+    filter {}
+
+    expiration {
+      days = 7
+    }
+  }
+}
@@ -53,7 +53,7 @@ resource "aws_lambda_function" "create" {
 
   runtime     = "java17"
   timeout     = 10
-  memory_size = 512
+  memory_size = var.LAMBDA_MEMORY_SIZE
 
   layers = [
     "arn:aws:lambda:${var.AWS_REGION}:901920570463:layer:aws-otel-java-agent-amd64-ver-1-28-0:1",
@@ -63,14 +63,30 @@ resource "aws_lambda_function" "create" {
   environment {
     variables = {
       AWS_LAMBDA_EXEC_WRAPPER             = "/opt/otel-handler"
+      JAVA_TOOL_OPTIONS                   = var.LAMBDA_JAVA_TOOL_OPTIONS
       OPENTELEMETRY_COLLECTOR_CONFIG_FILE = "/opt/collector.yaml"
       OTEL_SERVICE_NAME                   = local.lambda_create_function_name
       OTEL_EXPORTER_OTLP_ENDPOINT         = "http://localhost:4317"
       OTEL_METRICS_EXPORTER               = "otlp"
       OTEL_LOGS_EXPORTER                  = "otlp"
+      # Bulk requests add one LambdaCreateEvent per object to the span
+      OTEL_SPAN_EVENT_COUNT_LIMIT         = "1024"
       NEWRELIC_OTLP_ENDPOINT              = substr(var.NEWRELIC_LICENSE_KEY, 0, 2) == "eu" ? "otlp.eu01.nr-data.net:4317" : "otlp.nr-data.net:4317"
       NEWRELIC_LICENSE_KEY                = var.NEWRELIC_LICENSE_KEY
       INPUT_S3_BUCKET_NAME                = aws_s3_bucket.input.id
+      MANIFEST_S3_BUCKET_NAME             = aws_s3_bucket.manifest.id
+      DEADLINE_RESERVE_MILLIS             = "1000"
+      BULK_CREATE_MAX_COUNT               = "1000"
+      BULK_CREATE_PARALLELISM             = "8"
+      STORAGE_CODEC                       = "gzip"
+      STAGE_TRACING_MODE                  = "spans"
+      RESILIENCE_ENABLED                  = "true"
+      RETRY_MODE                          = "adaptive"
+      FAULT_INJECTION_ENABLED             = "true"
+      FAULT_INJECTION_OPERATIONS          = "PutObject"
+      # Faults hit the custom objects only and not the manifests
+      FAULT_INJECTION_BUCKETS             = aws_s3_bucket.input.id
+      FAULT_INJECTION_ERROR_RATE          = "0.0667"
     }
   }
 
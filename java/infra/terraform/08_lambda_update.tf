@@ -59,7 +59,7 @@ resource "aws_lambda_function" "update" {
 
   runtime     = "java17"
   timeout     = 10
-  memory_size = 512
+  memory_size = var.LAMBDA_MEMORY_SIZE
 
   layers = [
     "arn:aws:lambda:${var.AWS_REGION}:901920570463:layer:aws-otel-java-agent-amd64-ver-1-28-0:1",
@@ -69,6 +69,7 @@ resource "aws_lambda_function" "update" {
   environment {
     variables = {
       AWS_LAMBDA_EXEC_WRAPPER             = "/opt/otel-handler"
+      JAVA_TOOL_OPTIONS                   = var.LAMBDA_JAVA_TOOL_OPTIONS
       OPENTELEMETRY_COLLECTOR_CONFIG_FILE = "/opt/collector.yaml"
       OTEL_EXPORTER_OTLP_ENDPOINT         = "http://localhost:4317"
       OTEL_SERVICE_NAME                   = local.lambda_update_function_name
@@ -78,6 +79,14 @@ resource "aws_lambda_function" "update" {
       NEWRELIC_LICENSE_KEY   = var.NEWRELIC_LICENSE_KEY
       OUTPUT_S3_BUCKET_NAME  = aws_s3_bucket.output.id
       SQS_QUEUE_URL          = aws_sqs_queue.queue.url
+      UPDATE_MODE            = "body"
+      STORAGE_CODEC          = "gzip"
+      DEADLINE_RESERVE_MILLIS     = "1000"
+      DEADLINE_STOP_ON_EXHAUSTION = "true"
+      STAGE_TRACING_MODE          = "spans"
+      RESILIENCE_ENABLED          = "true"
+      RETRY_MODE                  = "adaptive"
+      FAULT_INJECTION_ENABLED     = "false"
     }
   }
 
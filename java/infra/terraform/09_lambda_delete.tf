@@ -53,7 +53,7 @@ resource "aws_lambda_function" "delete" {
 
   runtime     = "java17"
   timeout     = 10
-  memory_size = 512
+  memory_size = var.LAMBDA_MEMORY_SIZE
 
   layers = [
     "arn:aws:lambda:${var.AWS_REGION}:901920570463:layer:aws-otel-java-agent-amd64-ver-1-28-0:1",
@@ -63,6 +63,7 @@ resource "aws_lambda_function" "delete" {
   environment {
     variables = {
       AWS_LAMBDA_EXEC_WRAPPER             = "/opt/otel-handler"
+      JAVA_TOOL_OPTIONS                   = var.LAMBDA_JAVA_TOOL_OPTIONS
       OPENTELEMETRY_COLLECTOR_CONFIG_FILE = "/opt/collector.yaml"
       OTEL_EXPORTER_OTLP_ENDPOINT         = "http://localhost:4317"
       OTEL_SERVICE_NAME                   = local.lambda_delete_function_name
@@ -72,6 +73,20 @@ resource "aws_lambda_function" "delete" {
       NEWRELIC_LICENSE_KEY                = var.NEWRELIC_LICENSE_KEY
       INPUT_S3_BUCKET_NAME                = aws_s3_bucket.input.id
       OUTPUT_S3_BUCKET_NAME               = aws_s3_bucket.output.id
+      MANIFEST_S3_BUCKET_NAME             = aws_s3_bucket.manifest.id
+      DELETE_MODE                         = "manifest"
+      PURGE_POLICY                        = "age,checked"
+      CHECK_MODE                          = local.check_mode
+      PURGE_MIN_AGE_MINUTES               = "5"
+      PURGE_PARALLELISM                   = "16"
+      DEADLINE_RESERVE_MILLIS             = "1000"
+      DEADLINE_STOP_ON_EXHAUSTION         = "true"
+      STAGE_TRACING_MODE                  = "spans"
+      RESILIENCE_ENABLED                  = "true"
+      RETRY_MODE                          = "adaptive"
+      FAULT_INJECTION_ENABLED             = "true"
+      FAULT_INJECTION_OPERATIONS          = "ListObjectsV2"
+      FAULT_INJECTION_ERROR_RATE          = "0.3333"
     }
   }
 
@@ -59,7 +59,7 @@ resource "aws_lambda_function" "check" {
 
   runtime     = "java17"
   timeout     = 10
-  memory_size = 512
+  memory_size = var.LAMBDA_MEMORY_SIZE
 
   layers = [
     "arn:aws:lambda:${var.AWS_REGION}:901920570463:layer:aws-otel-java-agent-amd64-ver-1-28-0:1",
@@ -69,6 +69,7 @@ resource "aws_lambda_function" "check" {
   environment {
     variables = {
       AWS_LAMBDA_EXEC_WRAPPER             = "/opt/otel-handler"
+      JAVA_TOOL_OPTIONS                   = var.LAMBDA_JAVA_TOOL_OPTIONS
       OPENTELEMETRY_COLLECTOR_CONFIG_FILE = "/opt/collector.yaml"
       OTEL_EXPORTER_OTLP_ENDPOINT         = "http://localhost:4317"
       OTEL_SERVICE_NAME                   = local.lambda_check_function_name
@@ -77,6 +78,16 @@ resource "aws_lambda_function" "check" {
       NEWRELIC_OTLP_ENDPOINT              = substr(var.NEWRELIC_LICENSE_KEY, 0, 2) == "eu" ? "otlp.eu01.nr-data.net:4317" : "otlp.nr-data.net:4317"
       NEWRELIC_LICENSE_KEY                = var.NEWRELIC_LICENSE_KEY
       OUTPUT_S3_BUCKET_NAME               = aws_s3_bucket.output.id
+      CHECK_MODE                          = local.check_mode
+      STORAGE_CODEC                       = "gzip"
+      DEADLINE_RESERVE_MILLIS             = "1000"
+      DEADLINE_STOP_ON_EXHAUSTION         = "true"
+      STAGE_TRACING_MODE                  = "spans"
+      RESILIENCE_ENABLED                  = "true"
+      RETRY_MODE                          = "adaptive"
+      FAULT_INJECTION_ENABLED             = "true"
+      FAULT_INJECTION_OPERATIONS          = "GetObject,HeadObject"
+      FAULT_INJECTION_ERROR_RATE          = "0.0667"
     }
   }
 
@@ -90,4 +101,7 @@ resource "aws_lambda_function" "check" {
 resource "aws_lambda_event_source_mapping" "sqs_trigger_for_lambda" {
   event_source_arn = aws_sqs_queue.queue.arn
   function_name    = aws_lambda_function.check.arn
+
+  # Only the records which are not processed within the latency budget are retried
+  function_response_types = ["ReportBatchItemFailures"]
 }
@@ -0,0 +1,111 @@
+package common.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+public enum StorageCodec {
+
+  NONE(null),
+  GZIP("gzip"),
+  ZSTD("zstd");
+
+  // zstd needs native code, which not every function ships. Without it, zstd
+  // is an unsupported codec.
+  private static final boolean ZSTD_SUPPORTED = isZstdOnClasspath();
+
+  // The content encoding of the S3 object is the marker of the codec
+  private final String contentEncoding;
+
+  StorageCodec(
+      String contentEncoding) {
+    this.contentEncoding = contentEncoding;
+  }
+
+  public static StorageCodec fromName(
+      String name) {
+    return name == null || name.isBlank() ? NONE : checkSupported(StorageCodec.valueOf(name.toUpperCase()), name);
+  }
+
+  public static StorageCodec fromContentEncoding(
+      String contentEncoding) {
+
+    if (contentEncoding == null || contentEncoding.isBlank() || contentEncoding.equals("identity"))
+      return NONE;
+
+    for (StorageCodec codec : values())
+      if (contentEncoding.equals(codec.contentEncoding))
+        return checkSupported(codec, contentEncoding);
+
+    throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+  }
+
+  public String getContentEncoding() {
+    return this.contentEncoding;
+  }
+
+  public byte[] encode(
+      byte[] data) throws IOException {
+
+    if (this == NONE)
+      return data;
+
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    try (OutputStream out = this == GZIP
+        ? new GZIPOutputStream(byteArrayOutputStream)
+        : Zstd.newOutputStream(byteArrayOutputStream)) {
+      out.write(data);
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  public InputStream decode(
+      InputStream in) throws IOException {
+
+    switch (this) {
+      case GZIP:
+        return new GZIPInputStream(in);
+      case ZSTD:
+        return Zstd.newInputStream(in);
+      default:
+        return in;
+    }
+  }
+
+  private static StorageCodec checkSupported(
+      StorageCodec codec,
+      String name) {
+    if (codec == ZSTD && !ZSTD_SUPPORTED)
+      throw new IllegalArgumentException("Unsupported content encoding: " + name);
+    return codec;
+  }
+
+  private static boolean isZstdOnClasspath() {
+    try {
+      Class.forName("com.github.luben.zstd.ZstdInputStream", false, StorageCodec.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  // The zstd classes are only loaded once a zstd stream is built
+  private static class Zstd {
+
+    static InputStream newInputStream(
+        InputStream in) throws IOException {
+      return new ZstdInputStream(in);
+    }
+
+    static OutputStream newOutputStream(
+        OutputStream out) throws IOException {
+      return new ZstdOutputStream(out);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package common.deadline;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+
+public class Deadline {
+
+  private static final Logger logger = LoggerFactory.getLogger(Deadline.class);
+
+  // Time which is kept free at the end of the invocation for ending the span
+  // and flushing the telemetry.
+  private static final String RESERVE_MILLIS_ENV = "DEADLINE_RESERVE_MILLIS";
+  private static final long DEFAULT_RESERVE_MILLIS = 1000;
+
+  // Lower bound for the API call timeout so that an SDK call is never started
+  // with a zero or negative timeout.
+  private static final long MIN_API_CALL_TIMEOUT_MILLIS = 1;
+
+  private final long deadlineMillis;
+  private final long reserveMillis;
+
+  public Deadline(
+      Context context,
+      long reserveMillis) {
+    this.deadlineMillis = System.currentTimeMillis() + context.getRemainingTimeInMillis();
+    this.reserveMillis = reserveMillis;
+  }
+
+  // A missing, malformed or negative reserve falls back to the default
+  // instead of failing every invocation.
+  public static long getReserveMillisFromEnv() {
+    String value = System.getenv(RESERVE_MILLIS_ENV);
+    if (value == null)
+      return DEFAULT_RESERVE_MILLIS;
+
+    try {
+      long reserveMillis = Long.parseLong(value.trim());
+      if (reserveMillis >= 0)
+        return reserveMillis;
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+
+    logger.warn("Invalid " + RESERVE_MILLIS_ENV + ": " + value + ". Using " + DEFAULT_RESERVE_MILLIS + " ms.");
+    return DEFAULT_RESERVE_MILLIS;
+  }
+
+  public long getRemainingMillis() {
+    return this.deadlineMillis - System.currentTimeMillis();
+  }
+
+  public boolean isExhausted() {
+    // The reserve is kept for ending the span and flushing the telemetry
+    return getRemainingMillis() <= this.reserveMillis;
+  }
+
+  public Duration getApiCallTimeout() {
+    return Duration.ofMillis(Math.max(getRemainingMillis() - this.reserveMillis, MIN_API_CALL_TIMEOUT_MILLIS));
+  }
+
+  public AwsRequestOverrideConfiguration getOverrideConfiguration() {
+    return AwsRequestOverrideConfiguration
+        .builder()
+        .apiCallTimeout(getApiCallTimeout())
+        .build();
+  }
+}
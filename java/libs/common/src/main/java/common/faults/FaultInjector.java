@@ -0,0 +1,210 @@
+package common.faults;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+
+public class FaultInjector {
+
+  private static final Logger logger = LoggerFactory.getLogger(FaultInjector.class);
+
+  // Errors are not retryable and reach the function, throttling and server
+  // errors are retried by the resilience layer
+  public enum Fault {
+    NONE,
+    ERROR,
+    THROTTLE,
+    SERVER_ERROR,
+  }
+
+  private final boolean enabled;
+  private final String clientName;
+  private final long seed;
+  private final Set<String> operations;
+  private final Set<String> buckets;
+  private final double errorRate;
+  private final double throttleRate;
+  private final double serverErrorRate;
+  private final double latencyRate;
+  private final long latencyMillis;
+
+  // Order of the requests without a key per operation
+  private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+  private FaultInjector(
+      String clientName) {
+    this.enabled = Boolean.parseBoolean(System.getenv("FAULT_INJECTION_ENABLED"));
+    this.clientName = clientName;
+
+    // A fixed seed makes the injected faults reproducible. The name of the
+    // client is added as salt so that every client gets its own sequence.
+    this.seed = getSeedEnv("FAULT_INJECTION_SEED") + clientName.hashCode();
+
+    // Only the given operations are affected, all of them if none is given
+    String operations = getEnv("FAULT_INJECTION_OPERATIONS", "");
+    this.operations = operations.isBlank()
+        ? new HashSet<>()
+        : new HashSet<>(Arrays.asList(operations.split(",")));
+
+    // Only the requests to the given buckets are affected, all of them if
+    // none is given
+    String buckets = getEnv("FAULT_INJECTION_BUCKETS", "");
+    this.buckets = buckets.isBlank()
+        ? new HashSet<>()
+        : new HashSet<>(Arrays.asList(buckets.split(",")));
+
+    // The injector is built in the static initializers of the clients.
+    // Invalid values fall back to no faults, as an exception there would
+    // fail every later invocation of the container.
+    this.errorRate = getRateEnv("FAULT_INJECTION_ERROR_RATE");
+    this.throttleRate = getRateEnv("FAULT_INJECTION_THROTTLE_RATE");
+    this.serverErrorRate = getRateEnv("FAULT_INJECTION_SERVER_ERROR_RATE");
+    this.latencyRate = getRateEnv("FAULT_INJECTION_LATENCY_RATE");
+    this.latencyMillis = getMillisEnv("FAULT_INJECTION_LATENCY_MILLIS");
+  }
+
+  public static FaultInjector fromEnv(
+      String clientName) {
+    return new FaultInjector(clientName);
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  public boolean appliesTo(
+      String operationName) {
+    return this.operations.isEmpty() || this.operations.contains(operationName);
+  }
+
+  public boolean appliesTo(
+      String operationName,
+      String bucketName) {
+    return appliesTo(operationName)
+        && (this.buckets.isEmpty() || this.buckets.contains(bucketName));
+  }
+
+  // The faults of a request are drawn from a generator which is seeded with
+  // the request itself instead of from one generator which is shared by the
+  // threads of the client, so the outcome does not depend on their scheduling.
+  // Requests without a key are told apart by their order per operation, which
+  // is reproducible as long as they are sent from a single thread.
+  public Random newRandom(
+      String operationName,
+      String keyName,
+      int attempt) {
+
+    long sequence = keyName != null
+        ? attempt
+        : this.sequences.computeIfAbsent(operationName, name -> new AtomicLong()).getAndIncrement();
+    return new Random(mix(this.seed + 31L * Objects.hash(operationName, keyName) + sequence));
+  }
+
+  public long nextLatencyMillis(
+      Random random) {
+    return random.nextDouble() < this.latencyRate ? this.latencyMillis : 0;
+  }
+
+  public Fault nextFault(
+      Random random) {
+    double n = random.nextDouble();
+
+    if (n < this.errorRate)
+      return Fault.ERROR;
+    n -= this.errorRate;
+
+    if (n < this.throttleRate)
+      return Fault.THROTTLE;
+    n -= this.throttleRate;
+
+    if (n < this.serverErrorRate)
+      return Fault.SERVER_ERROR;
+
+    return Fault.NONE;
+  }
+
+  public ClientOverrideConfiguration applyTo(
+      ClientOverrideConfiguration clientOverrideConfiguration) {
+
+    // Nothing is registered on the client if fault injection is not enabled
+    if (!this.enabled)
+      return clientOverrideConfiguration;
+
+    logger.info("Enabling fault injection for [" + this.clientName + "] client with seed " + this.seed + ".");
+
+    return clientOverrideConfiguration.toBuilder()
+        .addExecutionInterceptor(new S3FaultInjectionInterceptor(this))
+        .build();
+  }
+
+  // Spreads close seeds over the whole range, as their first draws of Random
+  // would be correlated otherwise
+  private static long mix(
+      long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+
+  private static String getEnv(
+      String name,
+      String defaultValue) {
+    String value = System.getenv(name);
+    return value != null ? value : defaultValue;
+  }
+
+  private static long getSeedEnv(
+      String name) {
+    String value = System.getenv(name);
+    if (value != null) {
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid " + name + ": " + value + ". Using the current time.");
+      }
+    }
+    return System.currentTimeMillis();
+  }
+
+  private static double getRateEnv(
+      String name) {
+    String value = System.getenv(name);
+    if (value == null) return 0;
+
+    try {
+      double rate = Double.parseDouble(value.trim());
+      if (rate >= 0 && rate <= 1) return rate;
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+
+    logger.warn("Invalid " + name + ": " + value + ". Using 0.");
+    return 0;
+  }
+
+  private static long getMillisEnv(
+      String name) {
+    String value = System.getenv(name);
+    if (value == null) return 0;
+
+    try {
+      long millis = Long.parseLong(value.trim());
+      if (millis >= 0) return millis;
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+
+    logger.warn("Invalid " + name + ": " + value + ". Using 0 ms.");
+    return 0;
+  }
+}
@@ -0,0 +1,122 @@
+package common.faults;
+
+import java.util.Random;
+
+import common.faults.FaultInjector.Fault;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+public class S3FaultInjectionInterceptor implements ExecutionInterceptor {
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "FaultInjected";
+
+  // Number of the attempts of the execution which are already sent
+  private static final ExecutionAttribute<Integer> ATTEMPTS = new ExecutionAttribute<>("FaultInjectionAttempts");
+
+  private final FaultInjector faultInjector;
+
+  public S3FaultInjectionInterceptor(
+      FaultInjector faultInjector) {
+    this.faultInjector = faultInjector;
+  }
+
+  @Override
+  public void beforeTransmission(
+      Context.BeforeTransmission context,
+      ExecutionAttributes executionAttributes) {
+
+    // Faults are injected per attempt so that the retries see them as well
+    String operationName = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+    String bucketName = context.request().getValueForField("Bucket", String.class).orElse(null);
+    if (!this.faultInjector.appliesTo(operationName, bucketName))
+      return;
+
+    Integer attempts = executionAttributes.getAttribute(ATTEMPTS);
+    int attempt = attempts != null ? attempts : 0;
+    executionAttributes.putAttribute(ATTEMPTS, attempt + 1);
+
+    String keyName = context.request().getValueForField("Key", String.class).orElse(null);
+    Random random = this.faultInjector.newRandom(operationName, keyName, attempt);
+
+    long latencyMillis = this.faultInjector.nextLatencyMillis(random);
+    Fault fault = this.faultInjector.nextFault(random);
+    if (latencyMillis == 0 && fault == Fault.NONE)
+      return;
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("fault.type"), fault.name(),
+        AttributeKey.longKey("fault.latency.ms"), latencyMillis,
+        AttributeKey.stringKey("aws.operation"), operationName);
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+
+    if (latencyMillis > 0) {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    switch (fault) {
+      case ERROR:
+        throw createS3Error(operationName);
+      case THROTTLE:
+        throw createS3Exception(503, "SlowDown");
+      case SERVER_ERROR:
+        throw createS3Exception(500, "InternalError");
+      default:
+        return;
+    }
+  }
+
+  // The errors are not retryable and fit the operation, so that they are
+  // seen by the function instead of being retried away like the server
+  // errors
+  private S3Exception createS3Error(
+      String operationName) {
+
+    switch (operationName) {
+      case "GetObject":
+      case "HeadObject":
+        return createS3Exception(NoSuchKeyException.builder(), 404, "NoSuchKey");
+      case "ListObjectsV2":
+        return createS3Exception(NoSuchBucketException.builder(), 404, "NoSuchBucket");
+      default:
+        return createS3Exception(S3Exception.builder(), 403, "AccessDenied");
+    }
+  }
+
+  private S3Exception createS3Exception(
+      int statusCode,
+      String errorCode) {
+    return createS3Exception(S3Exception.builder(), statusCode, errorCode);
+  }
+
+  private S3Exception createS3Exception(
+      S3Exception.Builder builder,
+      int statusCode,
+      String errorCode) {
+
+    String message = "Injected fault: " + errorCode;
+    return (S3Exception) builder
+        .statusCode(statusCode)
+        .message(message)
+        .awsErrorDetails(AwsErrorDetails.builder()
+            .errorCode(errorCode)
+            .errorMessage(message)
+            .serviceName("S3")
+            .build())
+        .build();
+  }
+}
@@ -0,0 +1,103 @@
+package common.faults;
+
+import java.io.IOException;
+import java.util.Random;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.Request;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.RequestHandler2;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import common.faults.FaultInjector.Fault;
+
+public class SqsFaultInjectionRequestHandler extends RequestHandler2 {
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "FaultInjected";
+
+  private final FaultInjector faultInjector;
+
+  public SqsFaultInjectionRequestHandler(
+      FaultInjector faultInjector) {
+    this.faultInjector = faultInjector;
+  }
+
+  @Override
+  public void beforeAttempt(
+      HandlerBeforeAttemptContext context) {
+
+    // Faults are injected per attempt so that the retries see them as well.
+    // Unlike the failures before the first attempt, they are also seen by the
+    // circuit breaker.
+    Request<?> request = context.getRequest();
+    String operationName = request.getOriginalRequest().getClass().getSimpleName().replace("Request", "");
+    if (!this.faultInjector.appliesTo(operationName))
+      return;
+
+    // The messages and their attempts are sent one after another, so their
+    // order is reproducible
+    Random random = this.faultInjector.newRandom(operationName, null, 0);
+
+    long latencyMillis = this.faultInjector.nextLatencyMillis(random);
+    Fault fault = this.faultInjector.nextFault(random);
+    if (latencyMillis == 0 && fault == Fault.NONE)
+      return;
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("fault.type"), fault.name(),
+        AttributeKey.longKey("fault.latency.ms"), latencyMillis,
+        AttributeKey.stringKey("aws.operation"), operationName);
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+
+    if (latencyMillis > 0) {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    switch (fault) {
+      case ERROR:
+        throw createSqsException(400, "AWS.SimpleQueueService.NonExistentQueue", ErrorType.Client);
+      case THROTTLE:
+        throw failAttempt(createSqsException(400, "ThrottlingException", ErrorType.Client));
+      case SERVER_ERROR:
+        throw failAttempt(createSqsException(500, "InternalError", ErrorType.Service));
+      default:
+        return;
+    }
+  }
+
+  // The v1 SDK only retries the attempts which fail with an I/O error or with
+  // an error response, and a request handler cannot return a response. So
+  // the retryable faults fail the attempt with an I/O error, which is retried
+  // like a lost connection.
+  private static RuntimeException failAttempt(
+      AmazonServiceException cause) {
+    return SqsFaultInjectionRequestHandler.<RuntimeException>sneakyThrow(new IOException(cause.getMessage(), cause));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Exception> RuntimeException sneakyThrow(
+      Exception e) throws E {
+    throw (E) e;
+  }
+
+  private AmazonServiceException createSqsException(
+      int statusCode,
+      String errorCode,
+      ErrorType errorType) {
+
+    AmazonServiceException exception = new AmazonServiceException("Injected fault: " + errorCode);
+    exception.setStatusCode(statusCode);
+    exception.setErrorCode(errorCode);
+    exception.setErrorType(errorType);
+    exception.setServiceName("AmazonSQS");
+    return exception;
+  }
+}
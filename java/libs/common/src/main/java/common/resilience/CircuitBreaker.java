@@ -0,0 +1,107 @@
+package common.resilience;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+
+public class CircuitBreaker {
+
+  private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "CircuitBreakerTransition";
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN,
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openDurationMillis;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures = 0;
+  private long openedAtMillis = 0;
+
+  // Only the holder of the permit is let through as trial request while the
+  // breaker is half open, so parallel callers do not flood the dependency.
+  // The breaker leaves the half open state with the outcome of the trial.
+  // A trial whose outcome is never recorded, like one which fails before it
+  // is sent, expires after the open duration and gives way to a new one.
+  private final AtomicBoolean trialPermit = new AtomicBoolean(false);
+  private long trialStartedAtMillis = 0;
+
+  public CircuitBreaker(
+      String name,
+      int failureThreshold,
+      long openDurationMillis) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openDurationMillis = openDurationMillis;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public synchronized State getState() {
+    return this.state;
+  }
+
+  public synchronized boolean allowRequest() {
+    if (this.state == State.CLOSED)
+      return true;
+
+    // Let a trial request through once the open duration is over
+    if (this.state == State.OPEN) {
+      if (System.currentTimeMillis() - this.openedAtMillis < this.openDurationMillis)
+        return false;
+      this.trialPermit.set(true);
+      transitionTo(State.HALF_OPEN);
+    } else if (System.currentTimeMillis() - this.trialStartedAtMillis >= this.openDurationMillis) {
+      this.trialPermit.set(true);
+    }
+
+    if (!this.trialPermit.compareAndSet(true, false))
+      return false;
+    this.trialStartedAtMillis = System.currentTimeMillis();
+    return true;
+  }
+
+  public synchronized void recordSuccess() {
+    this.consecutiveFailures = 0;
+    if (this.state != State.CLOSED)
+      transitionTo(State.CLOSED);
+  }
+
+  public synchronized void recordFailure() {
+    this.consecutiveFailures++;
+    if (this.state == State.HALF_OPEN
+        || (this.state == State.CLOSED && this.consecutiveFailures >= this.failureThreshold)) {
+      this.openedAtMillis = System.currentTimeMillis();
+      transitionTo(State.OPEN);
+    }
+  }
+
+  private void transitionTo(
+      State newState) {
+
+    logger.info("Circuit breaker [" + this.name + "] is transitioning from " + this.state + " to " + newState + ".");
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("circuit.breaker.name"), this.name,
+        AttributeKey.stringKey("circuit.breaker.state.from"), this.state.name(),
+        AttributeKey.stringKey("circuit.breaker.state.to"), newState.name(),
+        AttributeKey.longKey("circuit.breaker.consecutive.failures"), (long) this.consecutiveFailures);
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+
+    this.state = newState;
+  }
+}
@@ -0,0 +1,93 @@
+package common.resilience;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.retry.RetryUtils;
+
+public class CircuitBreakerInterceptor implements ExecutionInterceptor {
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "CircuitBreakerRejection";
+
+  // Marks the executions which are rejected by the circuit breaker itself so
+  // that they are not counted as failures of the downstream service.
+  private static final ExecutionAttribute<Boolean> REJECTED = new ExecutionAttribute<>("CircuitBreakerRejected");
+
+  private final CircuitBreaker circuitBreaker;
+
+  public CircuitBreakerInterceptor(
+      CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @Override
+  public void beforeExecution(
+      Context.BeforeExecution context,
+      ExecutionAttributes executionAttributes) {
+
+    if (this.circuitBreaker.allowRequest())
+      return;
+
+    executionAttributes.putAttribute(REJECTED, true);
+
+    String operationName = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("circuit.breaker.name"), this.circuitBreaker.getName(),
+        AttributeKey.stringKey("aws.operation"), String.valueOf(operationName));
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+
+    throw SdkClientException.create("Circuit breaker [" + this.circuitBreaker.getName() + "] is open.");
+  }
+
+  @Override
+  public void afterExecution(
+      Context.AfterExecution context,
+      ExecutionAttributes executionAttributes) {
+    this.circuitBreaker.recordSuccess();
+  }
+
+  @Override
+  public void onExecutionFailure(
+      Context.FailedExecution context,
+      ExecutionAttributes executionAttributes) {
+
+    if (Boolean.TRUE.equals(executionAttributes.getAttribute(REJECTED)))
+      return;
+
+    // The API call timeout is only set by the deadline of the invocation, so
+    // its expiry says nothing about the service and is not an outcome. A
+    // trial which times out expires in the breaker.
+    if (context.exception() instanceof ApiCallTimeoutException)
+      return;
+
+    if (isUnhealthy(context.exception()))
+      this.circuitBreaker.recordFailure();
+    else
+      this.circuitBreaker.recordSuccess();
+  }
+
+  private boolean isUnhealthy(
+      Throwable throwable) {
+
+    // Client errors such as a missing key do not say anything about the
+    // health of the service, only throttling, 5xx and I/O errors do.
+    if (!(throwable instanceof SdkException))
+      return true;
+
+    SdkException exception = (SdkException) throwable;
+    if (RetryUtils.isThrottlingException(exception))
+      return true;
+    if (RetryUtils.isServiceException(exception))
+      return RetryUtils.toServiceException(exception).statusCode() >= 500;
+    return true;
+  }
+}
@@ -0,0 +1,57 @@
+package common.resilience;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+
+public class RecordingRetryCondition implements RetryCondition {
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "RetryDecision";
+
+  private final String clientName;
+  private final RetryCondition delegate;
+
+  public RecordingRetryCondition(
+      String clientName,
+      RetryCondition delegate) {
+    this.clientName = clientName;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean shouldRetry(
+      RetryPolicyContext context) {
+
+    boolean shouldRetry = this.delegate.shouldRetry(context);
+    recordDecision(context, shouldRetry);
+    return shouldRetry;
+  }
+
+  @Override
+  public void requestWillNotBeRetried(
+      RetryPolicyContext context) {
+    this.delegate.requestWillNotBeRetried(context);
+  }
+
+  @Override
+  public void requestSucceeded(
+      RetryPolicyContext context) {
+    this.delegate.requestSucceeded(context);
+  }
+
+  private void recordDecision(
+      RetryPolicyContext context,
+      boolean shouldRetry) {
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("retry.client"), this.clientName,
+        AttributeKey.booleanKey("retry.decision"), shouldRetry,
+        AttributeKey.longKey("retry.attempt"), (long) context.retriesAttempted() + 1,
+        AttributeKey.longKey("retry.http.status.code"), context.httpStatusCode() != null ? (long) context.httpStatusCode() : -1L,
+        AttributeKey.stringKey("retry.exception"), context.exception() != null ? context.exception().getClass().getSimpleName() : "");
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+  }
+}
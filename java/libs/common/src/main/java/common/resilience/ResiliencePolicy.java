@@ -0,0 +1,173 @@
+package common.resilience;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.awscore.retry.AwsRetryPolicy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.EqualJitterBackoffStrategy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.core.retry.conditions.AndRetryCondition;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+import software.amazon.awssdk.core.retry.conditions.TokenBucketExceptionCostFunction;
+import software.amazon.awssdk.core.retry.conditions.TokenBucketRetryCondition;
+
+public class ResiliencePolicy {
+
+  private static final Logger logger = LoggerFactory.getLogger(ResiliencePolicy.class);
+
+  // Tokens which a retry takes out of the retry budget, the cost of the
+  // standard retry mode of the SDK
+  private static final int RETRY_TOKEN_COST = 5;
+
+  private final boolean enabled;
+  private final RetryMode retryMode;
+  private final int maxRetries;
+  private final Duration baseDelay;
+  private final Duration maxBackoff;
+  private final int tokenBucketSize;
+  private final int circuitBreakerFailureThreshold;
+  private final long circuitBreakerOpenMillis;
+
+  private ResiliencePolicy() {
+    this.enabled = Boolean.parseBoolean(System.getenv("RESILIENCE_ENABLED"));
+
+    // The policy is built in the static initializers of the clients. Invalid
+    // values fall back to the defaults, as an exception there would fail
+    // every later invocation of the container.
+    this.retryMode = getRetryModeEnv("RETRY_MODE", RetryMode.ADAPTIVE);
+    this.maxRetries = getIntEnv("RETRY_MAX_RETRIES", 3);
+    this.baseDelay = Duration.ofMillis(getLongEnv("RETRY_BASE_DELAY_MILLIS", 100));
+    this.maxBackoff = Duration.ofMillis(getLongEnv("RETRY_MAX_BACKOFF_MILLIS", 2000));
+    this.tokenBucketSize = getIntEnv("RETRY_TOKEN_BUCKET_SIZE", 500);
+    this.circuitBreakerFailureThreshold = getIntEnv("CIRCUIT_BREAKER_FAILURE_THRESHOLD", 5);
+    this.circuitBreakerOpenMillis = getLongEnv("CIRCUIT_BREAKER_OPEN_MILLIS", 30000);
+  }
+
+  public static ResiliencePolicy fromEnv() {
+    return new ResiliencePolicy();
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  public ClientOverrideConfiguration getClientOverrideConfiguration(
+      String clientName) {
+
+    // Keep the SDK defaults if the resilience layer is not enabled
+    if (!this.enabled)
+      return ClientOverrideConfiguration.builder().build();
+
+    logger.info("Building resilience layer for [" + clientName + "] client with " + this.retryMode + " retry mode.");
+
+    // The token bucket is the retry budget of the client: every retry takes
+    // tokens out of it and every success puts some back. The decision of both
+    // the retry condition and the budget is recorded. The retryable error
+    // codes of AWS are part of the condition, so the SDK must not add them
+    // around the budget again.
+    RetryCondition retryCondition = new RecordingRetryCondition(
+        clientName,
+        AndRetryCondition.create(
+            AwsRetryPolicy.defaultRetryCondition(),
+            TokenBucketRetryCondition.builder()
+                .tokenBucketSize(this.tokenBucketSize)
+                .exceptionCostFunction(TokenBucketExceptionCostFunction.builder()
+                    .throttlingExceptionCost(RETRY_TOKEN_COST)
+                    .defaultExceptionCost(RETRY_TOKEN_COST)
+                    .build())
+                .build()));
+
+    RetryPolicy retryPolicy = RetryPolicy.builder(this.retryMode)
+        .numRetries(this.maxRetries)
+        .backoffStrategy(FullJitterBackoffStrategy.builder()
+            .baseDelay(this.baseDelay)
+            .maxBackoffTime(this.maxBackoff)
+            .build())
+        .throttlingBackoffStrategy(EqualJitterBackoffStrategy.builder()
+            .baseDelay(this.baseDelay)
+            .maxBackoffTime(this.maxBackoff)
+            .build())
+        .retryCondition(retryCondition)
+        .retryCapacityCondition(null)
+        .additionalRetryConditionsAllowed(false)
+        .build();
+
+    return ClientOverrideConfiguration.builder()
+        .retryPolicy(retryPolicy)
+        .addExecutionInterceptor(new CircuitBreakerInterceptor(newCircuitBreaker(clientName)))
+        .build();
+  }
+
+  RetryMode getRetryMode() {
+    return this.retryMode;
+  }
+
+  int getMaxRetries() {
+    return this.maxRetries;
+  }
+
+  Duration getBaseDelay() {
+    return this.baseDelay;
+  }
+
+  Duration getMaxBackoff() {
+    return this.maxBackoff;
+  }
+
+  CircuitBreaker newCircuitBreaker(
+      String clientName) {
+    return new CircuitBreaker(
+        clientName,
+        this.circuitBreakerFailureThreshold,
+        this.circuitBreakerOpenMillis);
+  }
+
+  private static RetryMode getRetryModeEnv(
+      String name,
+      RetryMode defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) return defaultValue;
+
+    try {
+      return RetryMode.valueOf(value.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      logger.warn("Invalid " + name + ": " + value + ". Using " + defaultValue + ".");
+      return defaultValue;
+    }
+  }
+
+  private static int getIntEnv(
+      String name,
+      int defaultValue) {
+    return (int) getLongEnv(name, defaultValue, Integer.MAX_VALUE);
+  }
+
+  private static long getLongEnv(
+      String name,
+      long defaultValue) {
+    return getLongEnv(name, defaultValue, Long.MAX_VALUE);
+  }
+
+  private static long getLongEnv(
+      String name,
+      long defaultValue,
+      long maxValue) {
+    String value = System.getenv(name);
+    if (value == null) return defaultValue;
+
+    try {
+      long parsed = Long.parseLong(value.trim());
+      if (parsed >= 0 && parsed <= maxValue) return parsed;
+    } catch (NumberFormatException e) {
+      // Logged below
+    }
+
+    logger.warn("Invalid " + name + ": " + value + ". Using " + defaultValue + ".");
+    return defaultValue;
+  }
+}
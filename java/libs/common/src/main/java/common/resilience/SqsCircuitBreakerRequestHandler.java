@@ -0,0 +1,73 @@
+package common.resilience;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
+import com.amazonaws.retry.RetryUtils;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+
+public class SqsCircuitBreakerRequestHandler extends RequestHandler2 {
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "CircuitBreakerRejection";
+
+  private final CircuitBreaker circuitBreaker;
+
+  public SqsCircuitBreakerRequestHandler(
+      CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @Override
+  public AmazonWebServiceRequest beforeExecution(
+      AmazonWebServiceRequest request) {
+
+    if (this.circuitBreaker.allowRequest())
+      return request;
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("circuit.breaker.name"), this.circuitBreaker.getName(),
+        AttributeKey.stringKey("aws.operation"), request.getClass().getSimpleName());
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+
+    throw new SdkClientException("Circuit breaker [" + this.circuitBreaker.getName() + "] is open.");
+  }
+
+  @Override
+  public void afterResponse(
+      Request<?> request,
+      Response<?> response) {
+    this.circuitBreaker.recordSuccess();
+  }
+
+  @Override
+  public void afterError(
+      Request<?> request,
+      Response<?> response,
+      Exception e) {
+
+    // The client execution timeout is only set by the deadline of the
+    // invocation, so its expiry says nothing about the service and is not an
+    // outcome. A trial which times out expires in the breaker.
+    if (e instanceof ClientExecutionTimeoutException)
+      return;
+
+    // Client errors do not say anything about the health of the service, only
+    // throttling, 5xx and I/O errors do.
+    boolean isClientError = e instanceof AmazonServiceException
+        && !RetryUtils.isThrottlingException((AmazonServiceException) e)
+        && ((AmazonServiceException) e).getStatusCode() < 500;
+
+    if (isClientError)
+      this.circuitBreaker.recordSuccess();
+    else
+      this.circuitBreaker.recordFailure();
+  }
+}
@@ -0,0 +1,47 @@
+package common.resilience;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.retry.RetryPolicy.RetryCondition;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+
+public class SqsRecordingRetryCondition implements RetryCondition {
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "RetryDecision";
+
+  private final String clientName;
+  private final RetryCondition delegate;
+
+  public SqsRecordingRetryCondition(
+      String clientName,
+      RetryCondition delegate) {
+    this.clientName = clientName;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean shouldRetry(
+      AmazonWebServiceRequest originalRequest,
+      AmazonClientException exception,
+      int retriesAttempted) {
+
+    boolean shouldRetry = this.delegate.shouldRetry(originalRequest, exception, retriesAttempted);
+
+    Attributes eventAttributes = Attributes.of(
+        AttributeKey.stringKey("retry.client"), this.clientName,
+        AttributeKey.booleanKey("retry.decision"), shouldRetry,
+        AttributeKey.longKey("retry.attempt"), (long) retriesAttempted + 1,
+        AttributeKey.longKey("retry.http.status.code"), exception instanceof AmazonServiceException
+            ? (long) ((AmazonServiceException) exception).getStatusCode()
+            : -1L,
+        AttributeKey.stringKey("retry.exception"), exception.getClass().getSimpleName());
+
+    Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes);
+
+    return shouldRetry;
+  }
+}
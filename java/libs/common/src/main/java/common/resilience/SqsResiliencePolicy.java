@@ -0,0 +1,60 @@
+package common.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.PredefinedBackoffStrategies;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryMode;
+import com.amazonaws.retry.RetryPolicy;
+
+// The resilience layer of the SQS clients, which are built with the v1 SDK.
+// It is kept apart from the policy, so that the functions without SQS do not
+// need the v1 SDK.
+public class SqsResiliencePolicy {
+
+  private static final Logger logger = LoggerFactory.getLogger(SqsResiliencePolicy.class);
+
+  private final ResiliencePolicy resiliencePolicy;
+
+  public SqsResiliencePolicy(
+      ResiliencePolicy resiliencePolicy) {
+    this.resiliencePolicy = resiliencePolicy;
+  }
+
+  public boolean isEnabled() {
+    return this.resiliencePolicy.isEnabled();
+  }
+
+  public ClientConfiguration getClientConfiguration(
+      String clientName) {
+
+    // Keep the SDK defaults if the resilience layer is not enabled
+    if (!this.resiliencePolicy.isEnabled())
+      return new ClientConfiguration();
+
+    logger.info("Building resilience layer for [" + clientName + "] client with " + this.resiliencePolicy.getRetryMode() + " retry mode.");
+
+    // The v1 SDK does not expose the size of its retry budget. Throttled
+    // retries enable its built-in retry quota instead.
+    RetryPolicy retryPolicy = new RetryPolicy(
+        new SqsRecordingRetryCondition(clientName, PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION),
+        new PredefinedBackoffStrategies.FullJitterBackoffStrategy(
+            (int) this.resiliencePolicy.getBaseDelay().toMillis(),
+            (int) this.resiliencePolicy.getMaxBackoff().toMillis()),
+        this.resiliencePolicy.getMaxRetries(),
+        false,
+        RetryMode.fromName(this.resiliencePolicy.getRetryMode().name().toLowerCase()));
+
+    return new ClientConfiguration()
+        .withRetryPolicy(retryPolicy)
+        .withThrottledRetries(true);
+  }
+
+  public RequestHandler2 getRequestHandler(
+      String clientName) {
+    return new SqsCircuitBreakerRequestHandler(this.resiliencePolicy.newCircuitBreaker(clientName));
+  }
+}
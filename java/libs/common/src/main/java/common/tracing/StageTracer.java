@@ -0,0 +1,169 @@
+package common.tracing;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+public class StageTracer {
+
+  private static final Logger logger = LoggerFactory.getLogger(StageTracer.class);
+
+  private static final String CUSTOM_OTEL_SPAN_EVENT_NAME = "Stage";
+
+  private static final AttributeKey<String> STAGE_NAME = AttributeKey.stringKey("stage.name");
+  private static final AttributeKey<Long> STAGE_DURATION_MS = AttributeKey.longKey("stage.duration.ms");
+  // Not "is.successful", which counts the outcomes of the custom events
+  private static final AttributeKey<Boolean> STAGE_IS_SUCCESSFUL = AttributeKey.booleanKey("stage.is.successful");
+
+  // The stages of all the functions, which use the ones of their own
+  public enum Stage {
+    PARSE("parse"),
+    FETCH("fetch"),
+    TRANSFORM("transform"),
+    EVALUATE("evaluate"),
+    STORE("store"),
+    NOTIFY("notify"),
+    DELETE("delete");
+
+    private final String name;
+
+    Stage(
+        String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+  }
+
+  // Stages are either traced as child spans of the invocation span, collapsed
+  // into events on the invocation span or not traced at all. They are not
+  // traced either if the invocation span is not sampled.
+  public enum Mode {
+    NONE,
+    SPANS,
+    EVENTS,
+  }
+
+  @FunctionalInterface
+  public interface StageCallable<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  @FunctionalInterface
+  public interface StageRunnable<E extends Exception> {
+    void run() throws E;
+  }
+
+  private final Mode mode;
+  private final Tracer tracer;
+
+  // The span names are built once per stage and not per invocation
+  private final Map<Stage, String> spanNames = new EnumMap<>(Stage.class);
+
+  private StageTracer(
+      String instrumentationName) {
+    String mode = System.getenv("STAGE_TRACING_MODE");
+    this.mode = mode != null ? Mode.valueOf(mode.toUpperCase()) : Mode.NONE;
+    this.tracer = GlobalOpenTelemetry.getTracer(instrumentationName);
+
+    for (Stage stage : Stage.values())
+      this.spanNames.put(stage, instrumentationName + "." + stage.getName());
+
+    logger.info("Stage tracing mode: " + this.mode);
+  }
+
+  public static StageTracer fromEnv(
+      String instrumentationName) {
+    return new StageTracer(instrumentationName);
+  }
+
+  public Mode getMode() {
+    return this.mode;
+  }
+
+  public <T, E extends Exception> T trace(
+      Stage stage,
+      StageCallable<T, E> callable) throws E {
+
+    // The spans and the events of an invocation which is not sampled are
+    // dropped, so they are not built
+    if (!Span.current().getSpanContext().isSampled())
+      return callable.call();
+
+    switch (this.mode) {
+      case SPANS:
+        return traceAsSpan(stage, callable);
+      case EVENTS:
+        return traceAsEvent(stage, callable);
+      default:
+        return callable.call();
+    }
+  }
+
+  public <E extends Exception> void trace(
+      Stage stage,
+      StageRunnable<E> runnable) throws E {
+
+    trace(stage, () -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  private <T, E extends Exception> T traceAsSpan(
+      Stage stage,
+      StageCallable<T, E> callable) throws E {
+
+    // The stage span becomes the parent of the SDK spans within the stage
+    Span span = this.tracer.spanBuilder(this.spanNames.get(stage))
+        .setAttribute(STAGE_NAME, stage.getName())
+        .startSpan();
+
+    try (Scope scope = span.makeCurrent()) {
+      return callable.call();
+    } catch (Exception e) {
+      span.setStatus(StatusCode.ERROR, e.getMessage());
+      span.recordException(e);
+      throw e;
+    } finally {
+      span.end();
+    }
+  }
+
+  private <T, E extends Exception> T traceAsEvent(
+      Stage stage,
+      StageCallable<T, E> callable) throws E {
+
+    long startEpochMillis = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    boolean isSuccessful = false;
+
+    try {
+      T result = callable.call();
+      isSuccessful = true;
+      return result;
+    } finally {
+      // The event is timestamped with the start of the stage so that it lines
+      // up with the SDK spans of the stage
+      Attributes eventAttributes = Attributes.of(
+          STAGE_NAME, stage.getName(),
+          STAGE_DURATION_MS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+          STAGE_IS_SUCCESSFUL, isSuccessful);
+
+      Span.current().addEvent(CUSTOM_OTEL_SPAN_EVENT_NAME, eventAttributes, startEpochMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+}
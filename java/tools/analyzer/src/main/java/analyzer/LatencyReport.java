@@ -0,0 +1,173 @@
+package analyzer;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.HdrHistogram.Histogram;
+
+import analyzer.daos.SpanEventRecord;
+import analyzer.daos.SpanRecord;
+
+public class LatencyReport {
+
+  private static final String CREATE_EVENT_NAME = "LambdaCreateEvent";
+  private static final String CHECK_EVENT_NAME = "LambdaCheckEvent";
+
+  // Outcomes are counted for the custom events of the functions only, such
+  // as LambdaCreateEvent, and not for the events of the stages
+  private static final String CUSTOM_EVENT_NAME_PREFIX = "Lambda";
+  private static final String CUSTOM_EVENT_NAME_SUFFIX = "Event";
+
+  private static final String IS_SUCCESSFUL_ATTRIBUTE = "is.successful";
+  private static final String KEY_NAME_ATTRIBUTE = "key.name";
+
+  // Latencies are recorded in microseconds with 3 significant digits
+  private static final int HISTOGRAM_SIGNIFICANT_DIGITS = 3;
+  private static final double MICROS_PER_MILLI = 1000.0;
+
+  // Latency and spans with error status per function and stage
+  private final Map<String, Histogram> stageHistograms = new TreeMap<>();
+  private final Map<String, Long> stageErrors = new HashMap<>();
+
+  // Successful and failed custom events per function
+  private final Map<String, long[]> outcomesPerFunction = new TreeMap<>();
+
+  // Start of the create and end of the check per object key
+  private final Map<String, Long> createStartsPerKey = new HashMap<>();
+  private final Map<String, Long> checkEndsPerKey = new HashMap<>();
+
+  public void add(
+      SpanRecord span) {
+
+    String stageName = span.getServiceName() + " / " + span.getName();
+    recordLatency(this.stageHistograms, stageName, span.getDurationNanos());
+    if (span.getIsError())
+      this.stageErrors.merge(stageName, 1L, Long::sum);
+
+    for (SpanEventRecord event : span.getEvents()) {
+      if (!isCustomEvent(event))
+        continue;
+
+      Object isSuccessful = event.getAttribute(IS_SUCCESSFUL_ATTRIBUTE);
+      if (!(isSuccessful instanceof Boolean))
+        continue;
+
+      long[] outcomes = this.outcomesPerFunction.computeIfAbsent(span.getServiceName(), k -> new long[2]);
+      outcomes[(Boolean) isSuccessful ? 0 : 1]++;
+
+      Object keyName = event.getAttribute(KEY_NAME_ATTRIBUTE);
+      if (!(Boolean) isSuccessful || keyName == null)
+        continue;
+
+      if (CREATE_EVENT_NAME.equals(event.getName()))
+        this.createStartsPerKey.merge(keyName.toString(), span.getStartTimeUnixNano(), Math::min);
+      else if (CHECK_EVENT_NAME.equals(event.getName()))
+        this.checkEndsPerKey.merge(keyName.toString(), span.getEndTimeUnixNano(), Math::max);
+    }
+  }
+
+  private boolean isCustomEvent(
+      SpanEventRecord event) {
+    return event.getName().startsWith(CUSTOM_EVENT_NAME_PREFIX) && event.getName().endsWith(CUSTOM_EVENT_NAME_SUFFIX);
+  }
+
+  public long getSpanCount(
+      String stageName) {
+    Histogram histogram = this.stageHistograms.get(stageName);
+    return histogram != null ? histogram.getTotalCount() : 0;
+  }
+
+  public double getLatencyMillisAtPercentile(
+      String stageName,
+      double percentile) {
+    Histogram histogram = this.stageHistograms.get(stageName);
+    return histogram != null ? histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI : 0;
+  }
+
+  // Share of the spans which ended with error status
+  public double getSpanErrorRate(
+      String stageName) {
+    long count = getSpanCount(stageName);
+    return count > 0 ? (double) this.stageErrors.getOrDefault(stageName, 0L) / count : 0;
+  }
+
+  // Share of the custom events which report a failure
+  public double getEventErrorRate(
+      String serviceName) {
+    long[] outcomes = this.outcomesPerFunction.get(serviceName);
+    return outcomes != null ? (double) outcomes[1] / (outcomes[0] + outcomes[1]) : 0;
+  }
+
+  public void print(
+      PrintStream out) {
+
+    out.println("== Latency per function and stage (ms) ==");
+    printHeader(out, "function / stage");
+    for (Map.Entry<String, Histogram> entry : this.stageHistograms.entrySet())
+      printHistogram(out, entry.getKey(), entry.getValue());
+
+    out.println();
+    out.println("== Outcomes per function ==");
+    out.println(String.format("%-60s %10s %10s %10s", "function", "succeeded", "failed", "error rate"));
+    for (Map.Entry<String, long[]> entry : this.outcomesPerFunction.entrySet())
+      out.println(String.format("%-60s %10d %10d %9.2f%%",
+          entry.getKey(), entry.getValue()[0], entry.getValue()[1], 100.0 * getEventErrorRate(entry.getKey())));
+
+    out.println();
+    out.println("== End-to-end latency from create to check (ms) ==");
+    Map<String, Histogram> endToEndHistograms = new TreeMap<>();
+    for (Map.Entry<String, Long> entry : this.checkEndsPerKey.entrySet()) {
+      Long createStart = this.createStartsPerKey.get(entry.getKey());
+      if (createStart != null && entry.getValue() >= createStart)
+        recordLatency(endToEndHistograms, "create -> check", entry.getValue() - createStart);
+    }
+    printHeader(out, "pipeline");
+    for (Map.Entry<String, Histogram> entry : endToEndHistograms.entrySet())
+      printHistogram(out, entry.getKey(), entry.getValue(), 0);
+    out.println(String.format("Objects created: %d, checked: %d, joined: %d",
+        this.createStartsPerKey.size(),
+        this.checkEndsPerKey.size(),
+        endToEndHistograms.isEmpty() ? 0 : endToEndHistograms.get("create -> check").getTotalCount()));
+  }
+
+  private void recordLatency(
+      Map<String, Histogram> histograms,
+      String name,
+      long durationNanos) {
+    histograms
+        .computeIfAbsent(name, k -> new Histogram(HISTOGRAM_SIGNIFICANT_DIGITS))
+        .recordValue(Math.max(durationNanos / 1000, 0));
+  }
+
+  private void printHeader(
+      PrintStream out,
+      String title) {
+    out.println(String.format("%-60s %8s %10s %10s %10s %10s %10s %10s",
+        title, "count", "error rate", "p50", "p90", "p99", "p99.9", "max"));
+  }
+
+  private void printHistogram(
+      PrintStream out,
+      String name,
+      Histogram histogram) {
+    printHistogram(out, name, histogram, getSpanErrorRate(name));
+  }
+
+  private void printHistogram(
+      PrintStream out,
+      String name,
+      Histogram histogram,
+      double errorRate) {
+    out.println(String.format("%-60s %8d %9.2f%% %10.2f %10.2f %10.2f %10.2f %10.2f",
+        name,
+        histogram.getTotalCount(),
+        100.0 * errorRate,
+        histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+        histogram.getValueAtPercentile(90) / MICROS_PER_MILLI,
+        histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+        histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+        histogram.getMaxValue() / MICROS_PER_MILLI));
+  }
+}
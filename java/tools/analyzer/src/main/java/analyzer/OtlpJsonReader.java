@@ -0,0 +1,157 @@
+package analyzer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import analyzer.daos.SpanEventRecord;
+import analyzer.daos.SpanRecord;
+
+public class OtlpJsonReader {
+
+  private static final String UNKNOWN_SERVICE_NAME = "unknown_service";
+
+  // OTLP status code of a failed span, either as enum number or enum name
+  private static final int STATUS_CODE_ERROR = 2;
+  private static final String STATUS_CODE_ERROR_NAME = "STATUS_CODE_ERROR";
+
+  public List<SpanRecord> read(
+      Path path) throws IOException {
+
+    List<SpanRecord> spans = new ArrayList<>();
+
+    try (Reader reader = Files.newBufferedReader(path)) {
+      // The collector file exporter writes one export request per line. A
+      // dump can also be a single request or an array of requests.
+      JsonReader jsonReader = new JsonReader(reader);
+      jsonReader.setLenient(true);
+
+      while (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+        JsonElement element = JsonParser.parseReader(jsonReader);
+        if (element.isJsonArray()) {
+          for (JsonElement request : element.getAsJsonArray())
+            readExportRequest(request.getAsJsonObject(), spans);
+        } else if (element.isJsonObject()) {
+          readExportRequest(element.getAsJsonObject(), spans);
+        }
+      }
+    }
+
+    return spans;
+  }
+
+  private void readExportRequest(
+      JsonObject request,
+      List<SpanRecord> spans) {
+
+    for (JsonElement resourceSpans : getArray(request, "resourceSpans")) {
+      JsonObject resourceSpansObject = resourceSpans.getAsJsonObject();
+
+      String serviceName = UNKNOWN_SERVICE_NAME;
+      if (resourceSpansObject.has("resource")) {
+        Map<String, Object> resourceAttributes = readAttributes(
+            getArray(resourceSpansObject.getAsJsonObject("resource"), "attributes"));
+        serviceName = String.valueOf(resourceAttributes.getOrDefault("service.name", UNKNOWN_SERVICE_NAME));
+      }
+
+      // Older collectors name the scope spans as instrumentation library spans
+      JsonArray scopeSpansArray = resourceSpansObject.has("scopeSpans")
+          ? getArray(resourceSpansObject, "scopeSpans")
+          : getArray(resourceSpansObject, "instrumentationLibrarySpans");
+
+      for (JsonElement scopeSpans : scopeSpansArray)
+        for (JsonElement span : getArray(scopeSpans.getAsJsonObject(), "spans"))
+          spans.add(readSpan(serviceName, span.getAsJsonObject()));
+    }
+  }
+
+  private SpanRecord readSpan(
+      String serviceName,
+      JsonObject span) {
+
+    List<SpanEventRecord> events = new ArrayList<>();
+    for (JsonElement event : getArray(span, "events")) {
+      JsonObject eventObject = event.getAsJsonObject();
+      events.add(new SpanEventRecord(
+          getString(eventObject, "name"),
+          getLong(eventObject, "timeUnixNano"),
+          readAttributes(getArray(eventObject, "attributes"))));
+    }
+
+    return new SpanRecord(
+        serviceName,
+        getString(span, "name"),
+        getString(span, "traceId"),
+        getString(span, "spanId"),
+        getLong(span, "startTimeUnixNano"),
+        getLong(span, "endTimeUnixNano"),
+        isError(span),
+        events);
+  }
+
+  private boolean isError(
+      JsonObject span) {
+
+    if (!span.has("status") || !span.getAsJsonObject("status").has("code"))
+      return false;
+
+    JsonElement code = span.getAsJsonObject("status").get("code");
+    if (code.getAsJsonPrimitive().isNumber())
+      return code.getAsInt() == STATUS_CODE_ERROR;
+    return STATUS_CODE_ERROR_NAME.equals(code.getAsString());
+  }
+
+  private Map<String, Object> readAttributes(
+      JsonArray attributes) {
+
+    Map<String, Object> result = new HashMap<>();
+    for (JsonElement attribute : attributes) {
+      JsonObject attributeObject = attribute.getAsJsonObject();
+      JsonObject value = attributeObject.getAsJsonObject("value");
+      if (value == null)
+        continue;
+
+      String key = getString(attributeObject, "key");
+      if (value.has("stringValue"))
+        result.put(key, value.get("stringValue").getAsString());
+      else if (value.has("boolValue"))
+        result.put(key, value.get("boolValue").getAsBoolean());
+      else if (value.has("intValue"))
+        result.put(key, value.get("intValue").getAsLong());
+      else if (value.has("doubleValue"))
+        result.put(key, value.get("doubleValue").getAsDouble());
+    }
+    return result;
+  }
+
+  private JsonArray getArray(
+      JsonObject object,
+      String memberName) {
+    return object.has(memberName) ? object.getAsJsonArray(memberName) : new JsonArray();
+  }
+
+  private String getString(
+      JsonObject object,
+      String memberName) {
+    return object.has(memberName) ? object.get(memberName).getAsString() : "";
+  }
+
+  private long getLong(
+      JsonObject object,
+      String memberName) {
+    // 64 bit integers are encoded as strings in OTLP JSON
+    return object.has(memberName) ? object.get(memberName).getAsLong() : 0;
+  }
+}
@@ -0,0 +1,33 @@
+package analyzer;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import analyzer.daos.SpanRecord;
+
+public class SpanAnalyzer {
+
+  public static void main(
+      String[] args) throws Exception {
+
+    if (args.length == 0) {
+      System.err.println("Usage: java -jar analyzer.jar <span-dump.json>...");
+      System.exit(1);
+    }
+
+    OtlpJsonReader reader = new OtlpJsonReader();
+    LatencyReport report = new LatencyReport();
+
+    int spanCount = 0;
+    for (String arg : args) {
+      List<SpanRecord> spans = reader.read(Path.of(arg));
+      for (SpanRecord span : spans)
+        report.add(span);
+      spanCount += spans.size();
+    }
+
+    System.out.println("Analyzed " + spanCount + " spans from " + args.length + " file(s).");
+    System.out.println();
+    report.print(System.out);
+  }
+}
@@ -0,0 +1,32 @@
+package analyzer.daos;
+
+import java.util.Map;
+
+public class SpanEventRecord {
+
+  private String name;
+  private long timeUnixNano;
+  private Map<String, Object> attributes;
+
+  public SpanEventRecord(
+      String name,
+      long timeUnixNano,
+      Map<String, Object> attributes) {
+    this.name = name;
+    this.timeUnixNano = timeUnixNano;
+    this.attributes = attributes;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public long getTimeUnixNano() {
+    return this.timeUnixNano;
+  }
+
+  public Object getAttribute(
+      String key) {
+    return this.attributes.get(key);
+  }
+}
@@ -0,0 +1,70 @@
+package analyzer.daos;
+
+import java.util.List;
+
+public class SpanRecord {
+
+  private String serviceName;
+  private String name;
+  private String traceId;
+  private String spanId;
+  private long startTimeUnixNano;
+  private long endTimeUnixNano;
+  private boolean isError;
+  private List<SpanEventRecord> events;
+
+  public SpanRecord(
+      String serviceName,
+      String name,
+      String traceId,
+      String spanId,
+      long startTimeUnixNano,
+      long endTimeUnixNano,
+      boolean isError,
+      List<SpanEventRecord> events) {
+    this.serviceName = serviceName;
+    this.name = name;
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.startTimeUnixNano = startTimeUnixNano;
+    this.endTimeUnixNano = endTimeUnixNano;
+    this.isError = isError;
+    this.events = events;
+  }
+
+  public String getServiceName() {
+    return this.serviceName;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public String getTraceId() {
+    return this.traceId;
+  }
+
+  public String getSpanId() {
+    return this.spanId;
+  }
+
+  public long getStartTimeUnixNano() {
+    return this.startTimeUnixNano;
+  }
+
+  public long getEndTimeUnixNano() {
+    return this.endTimeUnixNano;
+  }
+
+  public long getDurationNanos() {
+    return this.endTimeUnixNano - this.startTimeUnixNano;
+  }
+
+  public boolean getIsError() {
+    return this.isError;
+  }
+
+  public List<SpanEventRecord> getEvents() {
+    return this.events;
+  }
+}
@@ -0,0 +1,76 @@
+package analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import analyzer.daos.SpanEventRecord;
+import analyzer.daos.SpanRecord;
+
+public class LatencyReportTest {
+
+  private static final long NANOS_PER_MILLI = 1_000_000;
+
+  // The histograms keep 3 significant digits
+  private static final double LATENCY_PRECISION_MILLIS = 0.1;
+
+  @Test
+  public void computesLatencyPercentilesPerStage() {
+    LatencyReport report = new LatencyReport();
+    for (int i = 1; i <= 100; i++)
+      report.add(createSpan("update", "update.fetch", i * NANOS_PER_MILLI, false));
+
+    assertEquals(100, report.getSpanCount("update / update.fetch"));
+    assertEquals(50.0, report.getLatencyMillisAtPercentile("update / update.fetch", 50), LATENCY_PRECISION_MILLIS);
+    assertEquals(90.0, report.getLatencyMillisAtPercentile("update / update.fetch", 90), LATENCY_PRECISION_MILLIS);
+    assertEquals(99.0, report.getLatencyMillisAtPercentile("update / update.fetch", 99), LATENCY_PRECISION_MILLIS);
+    assertEquals(100.0, report.getLatencyMillisAtPercentile("update / update.fetch", 100), LATENCY_PRECISION_MILLIS);
+  }
+
+  @Test
+  public void computesSpanErrorRateFromErrorStatus() {
+    LatencyReport report = new LatencyReport();
+    for (int i = 0; i < 20; i++)
+      report.add(createSpan("update", "update.store", NANOS_PER_MILLI, i % 4 == 0));
+
+    assertEquals(0.25, report.getSpanErrorRate("update / update.store"), 1e-9);
+    assertEquals(0.0, report.getSpanErrorRate("update / update.fetch"), 1e-9);
+  }
+
+  @Test
+  public void computesEventErrorRateAndSpanErrorRateOfFixture() throws Exception {
+    LatencyReport report = new LatencyReport();
+    for (SpanRecord span : new OtlpJsonReader().read(Path.of(getClass().getResource("/spans.json").toURI())))
+      report.add(span);
+
+    assertEquals(0.0, report.getEventErrorRate("create"), 1e-9);
+    assertEquals(0.5, report.getEventErrorRate("check"), 1e-9);
+    assertEquals(1.0, report.getSpanErrorRate("create / create.store"), 1e-9);
+    assertEquals(0.5, report.getSpanErrorRate("check / check.record"), 1e-9);
+    assertEquals(20.0, report.getLatencyMillisAtPercentile("create / create", 50), LATENCY_PRECISION_MILLIS);
+  }
+
+  @Test
+  public void countsOutcomesOfCustomEventsOnly() {
+    LatencyReport report = new LatencyReport();
+    report.add(new SpanRecord("create", "create", "trace", "span", 0, NANOS_PER_MILLI, false, List.of(
+        new SpanEventRecord("Stage", 0, Map.of("stage.name", "store", "stage.is.successful", false)),
+        new SpanEventRecord("Stage", 0, Map.of("stage.name", "parse", "is.successful", false)),
+        new SpanEventRecord("LambdaCreateEvent", 0, Map.of("is.successful", true)))));
+
+    assertEquals(0.0, report.getEventErrorRate("create"), 1e-9);
+  }
+
+  private SpanRecord createSpan(
+      String serviceName,
+      String name,
+      long durationNanos,
+      boolean isError) {
+    return new SpanRecord(serviceName, name, "trace", "span", 0, durationNanos, isError,
+        List.of(new SpanEventRecord("Stage", 0, Map.of())));
+  }
+}
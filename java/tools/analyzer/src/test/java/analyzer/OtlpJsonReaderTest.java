@@ -0,0 +1,57 @@
+package analyzer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import analyzer.daos.SpanEventRecord;
+import analyzer.daos.SpanRecord;
+
+public class OtlpJsonReaderTest {
+
+  @Test
+  public void readsSpansOfEveryExportRequest() throws Exception {
+    List<SpanRecord> spans = readFixture();
+
+    assertEquals(4, spans.size());
+    assertEquals("create", spans.get(0).getServiceName());
+    assertEquals("create", spans.get(0).getName());
+    assertEquals("5b8efff798038103d269b633813fc60c", spans.get(0).getTraceId());
+    assertEquals("eee19b7ec3c1b174", spans.get(0).getSpanId());
+    assertEquals(20_000_000L, spans.get(0).getDurationNanos());
+
+    // The second request uses the names of older collectors
+    assertEquals("check", spans.get(2).getServiceName());
+    assertEquals("check.record", spans.get(2).getName());
+  }
+
+  @Test
+  public void readsErrorStatusAsNumberAndAsName() throws Exception {
+    List<SpanRecord> spans = readFixture();
+
+    assertFalse(spans.get(0).getIsError());
+    assertTrue(spans.get(1).getIsError());
+    assertFalse(spans.get(2).getIsError());
+    assertTrue(spans.get(3).getIsError());
+  }
+
+  @Test
+  public void readsTypedEventAttributes() throws Exception {
+    SpanEventRecord event = readFixture().get(2).getEvents().get(0);
+
+    assertEquals("LambdaCheckEvent", event.getName());
+    assertEquals(1697000000129000000L, event.getTimeUnixNano());
+    assertEquals(true, event.getAttribute("is.successful"));
+    assertEquals("1697000000000", event.getAttribute("key.name"));
+    assertEquals(80L, event.getAttribute("queue.wait.ms"));
+  }
+
+  private List<SpanRecord> readFixture() throws Exception {
+    return new OtlpJsonReader().read(Path.of(getClass().getResource("/spans.json").toURI()));
+  }
+}
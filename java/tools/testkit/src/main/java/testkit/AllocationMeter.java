@@ -0,0 +1,53 @@
+package testkit;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import com.sun.management.ThreadMXBean;
+
+// Bytes which are allocated by the calling thread while running a handler.
+// Work which is handed to other threads, such as the bulk uploads of create
+// or the purge checks of delete, is not counted.
+public class AllocationMeter {
+
+  private static final ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private AllocationMeter() {
+  }
+
+  public static boolean isSupported() {
+    return threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled();
+  }
+
+  public static <T> Measurement<T> measure(
+      Supplier<T> handler) {
+
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    T result = handler.get();
+    long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+    return new Measurement<>(result, after - before);
+  }
+
+  public static class Measurement<T> {
+
+    private final T result;
+    private final long allocatedBytes;
+
+    private Measurement(
+        T result,
+        long allocatedBytes) {
+      this.result = result;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    public T getResult() {
+      return this.result;
+    }
+
+    public long getAllocatedBytes() {
+      return this.allocatedBytes;
+    }
+  }
+}
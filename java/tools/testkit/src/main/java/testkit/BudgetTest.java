@@ -0,0 +1,104 @@
+package testkit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import testkit.aws.FakeAws;
+
+// The S3 and SQS call budget and the allocation budget of a function, which
+// the test class of the function inherits. The budgets are per item, which
+// is the unit of work of the function, like a record of a batch or an object
+// of a bulk request. The test class installs the telemetry, starts the fake
+// AWS and resets both in between the tests.
+public abstract class BudgetTest<T> {
+
+  // The budgets are not about latency, so the invocations are not cut short
+  // by their deadline on a slow machine
+  private static final int REMAINING_TIME_MILLIS = 5 * 60 * 1000;
+
+  // Every invocation gets its own keys, so that the items of the warm-up
+  // invocation are not counted
+  private long keyPrefix = 1697000000000L;
+
+  protected abstract String getFunctionName();
+
+  // Stores the objects which the items need and returns the invocation of
+  // the handler with them
+  protected abstract Supplier<T> prepareInvocation(
+      List<String> keyNames,
+      FakeContext context) throws IOException;
+
+  // Every item has to be processed, so that no budget is kept by failing
+  protected abstract void assertProcessed(
+      T result,
+      List<String> keyNames) throws IOException;
+
+  protected abstract int getCallBudgetItemCount();
+
+  protected abstract int getMaxS3Calls(
+      int itemCount);
+
+  protected int getMaxSqsCalls(
+      int itemCount) {
+    return 0;
+  }
+
+  // Asserts on the calls per operation, on top of the total
+  protected void assertCalls(
+      FakeAws fakeAws,
+      int itemCount) {
+  }
+
+  protected abstract int getAllocationBudgetItemCount();
+
+  protected abstract long getMaxAllocatedBytesPerItem();
+
+  @Test
+  public void staysWithinCallBudgetPerItem() throws IOException {
+    FakeAws fakeAws = FakeAws.start();
+    int itemCount = getCallBudgetItemCount();
+    List<String> keyNames = nextKeyNames(itemCount);
+
+    T result = prepareInvocation(keyNames, newContext()).get();
+
+    assertProcessed(result, keyNames);
+    assertCalls(fakeAws, itemCount);
+    assertTrue(fakeAws.s3().getCallCount() <= getMaxS3Calls(itemCount),
+        "S3 calls: " + fakeAws.s3().getCallCount());
+    assertTrue(fakeAws.sqs().getCallCount() <= getMaxSqsCalls(itemCount),
+        "SQS calls: " + fakeAws.sqs().getCallCount());
+  }
+
+  @Test
+  public void staysWithinAllocationBudgetPerItem() throws IOException {
+    assumeTrue(AllocationMeter.isSupported(), "Thread allocation measurement is not supported.");
+
+    // The first invocation builds the clients and loads the classes
+    List<String> warmUpKeyNames = nextKeyNames(1);
+    assertProcessed(prepareInvocation(warmUpKeyNames, newContext()).get(), warmUpKeyNames);
+
+    int itemCount = getAllocationBudgetItemCount();
+    List<String> keyNames = nextKeyNames(itemCount);
+    Supplier<T> invocation = prepareInvocation(keyNames, newContext());
+    AllocationMeter.Measurement<T> measurement = AllocationMeter.measure(invocation);
+
+    assertProcessed(measurement.getResult(), keyNames);
+    assertTrue(measurement.getAllocatedBytes() <= itemCount * getMaxAllocatedBytesPerItem(),
+        "Allocated bytes per item: " + measurement.getAllocatedBytes() / itemCount);
+  }
+
+  private List<String> nextKeyNames(
+      int count) {
+    return Events.keyNames(String.valueOf(this.keyPrefix++), count);
+  }
+
+  private FakeContext newContext() {
+    return new FakeContext(getFunctionName()).withRemainingTimeInMillis(REMAINING_TIME_MILLIS);
+  }
+}
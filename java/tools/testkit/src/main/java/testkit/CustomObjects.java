@@ -0,0 +1,34 @@
+package testkit;
+
+import com.google.gson.Gson;
+
+import testkit.aws.ContentEncodings;
+import testkit.aws.StoredObject;
+
+// Custom objects as the functions store them: JSON which is encoded by the
+// storage codec of the function under test. The objects are the CustomObject
+// classes of the functions, which all serialize to the same JSON.
+public class CustomObjects {
+
+  private static final Gson gson = new Gson();
+
+  private CustomObjects() {
+  }
+
+  public static StoredObject of(
+      Object customObject) {
+    return of(customObject, ContentEncodings.ofStorageCodec());
+  }
+
+  public static StoredObject of(
+      Object customObject,
+      String contentEncoding) {
+    return StoredObject.ofJson(gson.toJson(customObject), contentEncoding);
+  }
+
+  public static <T> T decode(
+      StoredObject object,
+      Class<T> type) {
+    return gson.fromJson(object.getDecodedContentAsString(), type);
+  }
+}
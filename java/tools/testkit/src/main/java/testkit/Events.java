@@ -0,0 +1,186 @@
+package testkit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent.ProxyRequestContext;
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.MessageAttribute;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.RequestParametersEntity;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.ResponseElementsEntity;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3BucketEntity;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3Entity;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3EventNotificationRecord;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3ObjectEntity;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.UserIdentityEntity;
+
+// Synthetic events which are shaped like the ones which API Gateway, S3 and
+// SQS send to the functions
+public class Events {
+
+  private static final String AWS_REGION = "eu-west-1";
+  private static final String ACCOUNT_ID = "000000000000";
+  private static final String SQS_QUEUE_ARN = "arn:aws:sqs:" + AWS_REGION + ":" + ACCOUNT_ID + ":otel.fifo";
+
+  // Message attribute which the update sets to the time it has sent the message
+  private static final String SENT_TIMESTAMP_MESSAGE_ATTRIBUTE = "sent.timestamp";
+
+  private Events() {
+  }
+
+  public static List<String> keyNames(
+      String keyPrefix,
+      int count) {
+
+    List<String> keyNames = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      keyNames.add(keyPrefix + "-" + i);
+    return keyNames;
+  }
+
+  public static APIGatewayProxyRequestEvent apiGatewayRequest() {
+    return apiGatewayRequest(null, null);
+  }
+
+  public static APIGatewayProxyRequestEvent apiGatewayBulkRequest(
+      int count,
+      String item) {
+
+    Map<String, String> queryStringParameters = new HashMap<>();
+    queryStringParameters.put("count", String.valueOf(count));
+
+    String body = item != null ? "{\"item\":\"" + item + "\"}" : null;
+    return apiGatewayRequest(body, queryStringParameters);
+  }
+
+  public static APIGatewayProxyRequestEvent apiGatewayRequest(
+      String body,
+      Map<String, String> queryStringParameters) {
+
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Content-Type", "application/json");
+    headers.put("Host", "api.execute-api." + AWS_REGION + ".amazonaws.com");
+    headers.put("User-Agent", "testkit");
+
+    ProxyRequestContext requestContext = new ProxyRequestContext();
+    requestContext.setAccountId(ACCOUNT_ID);
+    requestContext.setApiId("api");
+    requestContext.setStage("test");
+    requestContext.setRequestId(UUID.randomUUID().toString());
+    requestContext.setHttpMethod("POST");
+    requestContext.setPath("/test/create");
+    requestContext.setResourcePath("/create");
+    requestContext.setProtocol("HTTP/1.1");
+    requestContext.setRequestTimeEpoch(System.currentTimeMillis());
+
+    return new APIGatewayProxyRequestEvent()
+        .withVersion("1.0")
+        .withResource("/create")
+        .withPath("/create")
+        .withHttpMethod("POST")
+        .withHeaders(headers)
+        .withQueryStringParameters(queryStringParameters)
+        .withRequestContext(requestContext)
+        .withBody(body)
+        .withIsBase64Encoded(false);
+  }
+
+  public static S3Event s3Event(
+      String bucketName,
+      String keyPrefix,
+      int count) {
+    return s3Event(bucketName, keyNames(keyPrefix, count));
+  }
+
+  public static S3Event s3Event(
+      String bucketName,
+      List<String> keyNames) {
+
+    String eventTime = Instant.now().toString();
+
+    List<S3EventNotificationRecord> records = new ArrayList<>(keyNames.size());
+    for (String keyName : keyNames) {
+      S3Entity s3 = new S3Entity(
+          "update_s3_trigger",
+          new S3BucketEntity(bucketName, new UserIdentityEntity(ACCOUNT_ID), "arn:aws:s3:::" + bucketName),
+          new S3ObjectEntity(keyName, 0L, null, null, Long.toHexString(System.nanoTime())),
+          "1.0");
+
+      records.add(new S3EventNotificationRecord(
+          AWS_REGION,
+          "ObjectCreated:Put",
+          "aws:s3",
+          eventTime,
+          "2.1",
+          new RequestParametersEntity("127.0.0.1"),
+          new ResponseElementsEntity(null, UUID.randomUUID().toString()),
+          s3,
+          new UserIdentityEntity(ACCOUNT_ID)));
+    }
+
+    return new S3Event(records);
+  }
+
+  public static SQSEvent sqsEvent(
+      String bucketName,
+      String keyPrefix,
+      int count) {
+    return sqsEvent(bucketName, keyNames(keyPrefix, count));
+  }
+
+  public static SQSEvent sqsEvent(
+      String bucketName,
+      List<String> keyNames) {
+
+    // The bodies are the ones which the update sends
+    List<String> bodies = new ArrayList<>(keyNames.size());
+    for (String keyName : keyNames)
+      bodies.add("{\"bucket\":\"" + bucketName + "\",\"key\":\"" + keyName + "\"}");
+    return sqsEvent(bodies);
+  }
+
+  public static SQSEvent sqsEvent(
+      List<String> bodies) {
+
+    String sentTimestamp = String.valueOf(System.currentTimeMillis());
+
+    List<SQSMessage> records = new ArrayList<>(bodies.size());
+    for (String body : bodies) {
+      Map<String, String> attributes = new HashMap<>();
+      attributes.put("ApproximateReceiveCount", "1");
+      attributes.put("SentTimestamp", sentTimestamp);
+      attributes.put("SenderId", ACCOUNT_ID);
+      attributes.put("ApproximateFirstReceiveTimestamp", sentTimestamp);
+      attributes.put("MessageGroupId", "otel");
+
+      MessageAttribute sentTimestampAttribute = new MessageAttribute();
+      sentTimestampAttribute.setDataType("Number");
+      sentTimestampAttribute.setStringValue(sentTimestamp);
+
+      Map<String, MessageAttribute> messageAttributes = new HashMap<>();
+      messageAttributes.put(SENT_TIMESTAMP_MESSAGE_ATTRIBUTE, sentTimestampAttribute);
+
+      SQSMessage record = new SQSMessage();
+      record.setMessageId(UUID.randomUUID().toString());
+      record.setReceiptHandle(UUID.randomUUID().toString());
+      record.setBody(body);
+      record.setAttributes(attributes);
+      record.setMessageAttributes(messageAttributes);
+      record.setEventSource("aws:sqs");
+      record.setEventSourceArn(SQS_QUEUE_ARN);
+      record.setAwsRegion(AWS_REGION);
+      records.add(record);
+    }
+
+    SQSEvent event = new SQSEvent();
+    event.setRecords(records);
+    return event;
+  }
+}
@@ -0,0 +1,116 @@
+package testkit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+public class FakeContext implements Context {
+
+  // Timeout and memory of the functions in Terraform
+  private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+  private static final int DEFAULT_MEMORY_LIMIT_IN_MB = 512;
+
+  private final String functionName;
+  private String awsRequestId = UUID.randomUUID().toString();
+  private int memoryLimitInMB = DEFAULT_MEMORY_LIMIT_IN_MB;
+
+  // The remaining time counts down from the time it is set, like the one of
+  // a real invocation
+  private long deadlineMillis = System.currentTimeMillis() + DEFAULT_TIMEOUT_MILLIS;
+
+  private final LambdaLogger logger = new LambdaLogger() {
+    @Override
+    public void log(
+        String message) {
+      System.out.println(message);
+    }
+
+    @Override
+    public void log(
+        byte[] message) {
+      System.out.println(new String(message, StandardCharsets.UTF_8));
+    }
+  };
+
+  public FakeContext(
+      String functionName) {
+    this.functionName = functionName;
+  }
+
+  public FakeContext withAwsRequestId(
+      String awsRequestId) {
+    this.awsRequestId = awsRequestId;
+    return this;
+  }
+
+  public FakeContext withRemainingTimeInMillis(
+      int remainingTimeInMillis) {
+    this.deadlineMillis = System.currentTimeMillis() + remainingTimeInMillis;
+    return this;
+  }
+
+  public FakeContext withMemoryLimitInMB(
+      int memoryLimitInMB) {
+    this.memoryLimitInMB = memoryLimitInMB;
+    return this;
+  }
+
+  @Override
+  public String getAwsRequestId() {
+    return this.awsRequestId;
+  }
+
+  @Override
+  public String getLogGroupName() {
+    return "/aws/lambda/" + this.functionName;
+  }
+
+  @Override
+  public String getLogStreamName() {
+    return "testkit/[$LATEST]" + this.awsRequestId;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return this.functionName;
+  }
+
+  @Override
+  public String getFunctionVersion() {
+    return "$LATEST";
+  }
+
+  @Override
+  public String getInvokedFunctionArn() {
+    return "arn:aws:lambda:eu-west-1:000000000000:function:" + this.functionName;
+  }
+
+  @Override
+  public CognitoIdentity getIdentity() {
+    return null;
+  }
+
+  @Override
+  public ClientContext getClientContext() {
+    return null;
+  }
+
+  @Override
+  public int getRemainingTimeInMillis() {
+    return (int) Math.max(this.deadlineMillis - System.currentTimeMillis(), 0);
+  }
+
+  @Override
+  public int getMemoryLimitInMB() {
+    return this.memoryLimitInMB;
+  }
+
+  @Override
+  public LambdaLogger getLogger() {
+    return this.logger;
+  }
+}
@@ -0,0 +1,129 @@
+package testkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanLimits;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+
+// Replaces the agent of the Lambda layer with an SDK which keeps the ended
+// spans in memory. It has to be installed before the handler class is
+// loaded, because the handlers get their tracers in static initializers.
+public class InMemoryTelemetry {
+
+  private static final AttributeKey<String> FAAS_EXECUTION = AttributeKey.stringKey("faas.execution");
+
+  // Events beyond the limit are dropped like by the agent, which reads the
+  // same variable
+  private static final String SPAN_EVENT_COUNT_LIMIT_ENV = "OTEL_SPAN_EVENT_COUNT_LIMIT";
+  private static final int DEFAULT_SPAN_EVENT_COUNT_LIMIT = 128;
+
+  private static InMemoryTelemetry instance;
+
+  private final InMemorySpanExporter spanExporter;
+  private final Tracer tracer;
+
+  private InMemoryTelemetry() {
+    this.spanExporter = InMemorySpanExporter.create();
+
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder()
+            .setSpanLimits(SpanLimits.builder()
+                .setMaxNumberOfEvents(getSpanEventCountLimit())
+                .build())
+            .addSpanProcessor(SimpleSpanProcessor.create(this.spanExporter))
+            .build())
+        .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+        .build();
+
+    // The global instance can only be set once per JVM
+    GlobalOpenTelemetry.resetForTest();
+    GlobalOpenTelemetry.set(openTelemetry);
+
+    this.tracer = openTelemetry.getTracer("testkit");
+  }
+
+  private static int getSpanEventCountLimit() {
+    String value = System.getenv(SPAN_EVENT_COUNT_LIMIT_ENV);
+    return value != null ? Integer.parseInt(value) : DEFAULT_SPAN_EVENT_COUNT_LIMIT;
+  }
+
+  public static synchronized InMemoryTelemetry install() {
+    if (instance == null)
+      instance = new InMemoryTelemetry();
+    return instance;
+  }
+
+  // Runs the handler within an invocation span, like the agent does, so
+  // that the custom span events and the child spans have a parent
+  public <T> T invoke(
+      Context context,
+      Supplier<T> handler) {
+
+    Span span = this.tracer.spanBuilder(context.getFunctionName())
+        .setSpanKind(SpanKind.SERVER)
+        .setAttribute(FAAS_EXECUTION, context.getAwsRequestId())
+        .startSpan();
+
+    try (Scope scope = span.makeCurrent()) {
+      return handler.get();
+    } finally {
+      span.end();
+    }
+  }
+
+  public void reset() {
+    this.spanExporter.reset();
+  }
+
+  public List<SpanData> getFinishedSpans() {
+    return this.spanExporter.getFinishedSpanItems();
+  }
+
+  public List<SpanData> getFinishedSpans(
+      String spanName) {
+
+    List<SpanData> spans = new ArrayList<>();
+    for (SpanData span : getFinishedSpans())
+      if (span.getName().equals(spanName))
+        spans.add(span);
+    return spans;
+  }
+
+  public SpanData getInvocationSpan(
+      Context context) {
+
+    for (SpanData span : getFinishedSpans())
+      if (context.getAwsRequestId().equals(span.getAttributes().get(FAAS_EXECUTION)))
+        return span;
+    throw new IllegalStateException("No invocation span is found for [" + context.getAwsRequestId() + "].");
+  }
+
+  // Events such as LambdaCreateEvent and LambdaCheckEvent of all spans
+  public List<EventData> getEvents(
+      String eventName) {
+
+    List<EventData> events = new ArrayList<>();
+    for (SpanData span : getFinishedSpans())
+      for (EventData event : span.getEvents())
+        if (event.getName().equals(eventName))
+          events.add(event);
+    return events;
+  }
+}
@@ -0,0 +1,108 @@
+package testkit.aws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+// Encodes and decodes the content of the objects like the storage codecs of
+// the functions do. The content encoding of the object is the marker of the
+// codec, and no content encoding means no codec.
+public class ContentEncodings {
+
+  public static final String GZIP = "gzip";
+  public static final String ZSTD = "zstd";
+
+  private static final String STORAGE_CODEC_ENV = "STORAGE_CODEC";
+  private static final String STORAGE_CODEC_NONE = "none";
+
+  private ContentEncodings() {
+  }
+
+  // The content encoding of the codec which the function under test is
+  // configured with
+  public static String ofStorageCodec() {
+    String name = System.getenv(STORAGE_CODEC_ENV);
+    return name == null || name.isBlank() || name.equalsIgnoreCase(STORAGE_CODEC_NONE) ? null : name.toLowerCase();
+  }
+
+  public static byte[] encode(
+      byte[] data,
+      String contentEncoding) {
+
+    if (contentEncoding == null)
+      return data;
+
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    try (OutputStream out = newOutputStream(byteArrayOutputStream, contentEncoding)) {
+      out.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  public static byte[] decode(
+      byte[] data,
+      String contentEncoding) {
+
+    if (contentEncoding == null || contentEncoding.isBlank() || contentEncoding.equals("identity"))
+      return data;
+
+    try (InputStream in = newInputStream(new ByteArrayInputStream(data), contentEncoding)) {
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static OutputStream newOutputStream(
+      OutputStream out,
+      String contentEncoding) throws IOException {
+
+    switch (contentEncoding) {
+      case GZIP:
+        return new GZIPOutputStream(out);
+      case ZSTD:
+        return Zstd.newOutputStream(out);
+      default:
+        throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+    }
+  }
+
+  private static InputStream newInputStream(
+      InputStream in,
+      String contentEncoding) throws IOException {
+
+    switch (contentEncoding) {
+      case GZIP:
+        return new GZIPInputStream(in);
+      case ZSTD:
+        return Zstd.newInputStream(in);
+      default:
+        throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+    }
+  }
+
+  // zstd-jni is provided by the functions which use it only, so its classes
+  // are loaded when zstd is used
+  private static class Zstd {
+
+    static OutputStream newOutputStream(
+        OutputStream out) throws IOException {
+      return new ZstdOutputStream(out);
+    }
+
+    static InputStream newInputStream(
+        InputStream in) throws IOException {
+      return new ZstdInputStream(in);
+    }
+  }
+}
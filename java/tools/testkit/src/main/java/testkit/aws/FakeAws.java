@@ -0,0 +1,106 @@
+package testkit.aws;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Local HTTP server which S3 and SQS requests of the SDKs are redirected to
+// while it is running. The redirection is done by the execution interceptor
+// and the request handler which the SDKs load from the classpath of the
+// tests, so the clients of the handlers are not changed.
+public class FakeAws implements AutoCloseable {
+
+  static final String SERVICE_HEADER = "x-testkit-service";
+  static final String OPERATION_HEADER = "x-testkit-operation";
+  static final String SERVICE_S3 = "s3";
+  static final String SERVICE_SQS = "sqs";
+
+  private static volatile FakeAws running;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final FakeS3 s3 = new FakeS3();
+  private final FakeSqs sqs = new FakeSqs();
+
+  private FakeAws() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/", this::handle);
+
+    // The bulk create and the purge policy send requests in parallel
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "fake-aws");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server.setExecutor(this.executor);
+    this.server.start();
+  }
+
+  // The clients of the handlers are kept for the whole JVM, so one server is
+  // shared by all tests and only its state is reset in between
+  public static synchronized FakeAws start() throws IOException {
+    if (running == null)
+      running = new FakeAws();
+    return running;
+  }
+
+  static FakeAws getRunning() {
+    return running;
+  }
+
+  public FakeS3 s3() {
+    return this.s3;
+  }
+
+  public FakeSqs sqs() {
+    return this.sqs;
+  }
+
+  public void reset() {
+    this.s3.reset();
+    this.sqs.reset();
+  }
+
+  String getHost() {
+    return this.server.getAddress().getAddress().getHostAddress();
+  }
+
+  int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    synchronized (FakeAws.class) {
+      this.server.stop(0);
+      this.executor.shutdownNow();
+      running = null;
+    }
+  }
+
+  private void handle(
+      HttpExchange exchange) throws IOException {
+
+    try {
+      String service = exchange.getRequestHeaders().getFirst(SERVICE_HEADER);
+      if (SERVICE_S3.equals(service)) {
+        this.s3.handle(exchange, exchange.getRequestHeaders().getFirst(OPERATION_HEADER));
+      } else if (SERVICE_SQS.equals(service)) {
+        this.sqs.handle(exchange);
+      } else {
+        exchange.sendResponseHeaders(400, -1);
+        exchange.close();
+      }
+    } catch (RuntimeException e) {
+      // Errors of the fakes are answered like internal errors of AWS
+      exchange.sendResponseHeaders(500, -1);
+      exchange.close();
+      throw e;
+    }
+  }
+}
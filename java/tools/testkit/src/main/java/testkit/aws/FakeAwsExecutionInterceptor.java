@@ -0,0 +1,54 @@
+package testkit.aws;
+
+import java.net.URI;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpRequest;
+
+// Redirects the S3 requests of the v2 SDK to the fake while it is running.
+// It is registered as a global interceptor in
+// software/amazon/awssdk/global/handlers/execution.interceptors.
+public class FakeAwsExecutionInterceptor implements ExecutionInterceptor {
+
+  private static final String S3_SERVICE_NAME = "S3";
+
+  @Override
+  public void beforeExecution(
+      Context.BeforeExecution context,
+      ExecutionAttributes executionAttributes) {
+
+    FakeAws fakeAws = FakeAws.getRunning();
+    if (fakeAws == null || !isS3(executionAttributes))
+      return;
+
+    // The endpoint is resolved by the S3 interceptors which run after the
+    // global ones, so the fake is set like an endpoint override. Endpoints
+    // with an IP address are always addressed in path style.
+    executionAttributes.putAttribute(SdkExecutionAttribute.ENDPOINT_OVERRIDDEN, true);
+    executionAttributes.putAttribute(SdkExecutionAttribute.CLIENT_ENDPOINT,
+        URI.create("http://" + fakeAws.getHost() + ":" + fakeAws.getPort()));
+  }
+
+  @Override
+  public SdkHttpRequest modifyHttpRequest(
+      Context.ModifyHttpRequest context,
+      ExecutionAttributes executionAttributes) {
+
+    FakeAws fakeAws = FakeAws.getRunning();
+    if (fakeAws == null || !isS3(executionAttributes))
+      return context.httpRequest();
+
+    return context.httpRequest().toBuilder()
+        .putHeader(FakeAws.SERVICE_HEADER, FakeAws.SERVICE_S3)
+        .putHeader(FakeAws.OPERATION_HEADER, executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME))
+        .build();
+  }
+
+  private boolean isS3(
+      ExecutionAttributes executionAttributes) {
+    return S3_SERVICE_NAME.equals(executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME));
+  }
+}
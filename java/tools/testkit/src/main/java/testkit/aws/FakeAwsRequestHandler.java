@@ -0,0 +1,27 @@
+package testkit.aws;
+
+import java.net.URI;
+
+import com.amazonaws.Request;
+import com.amazonaws.handlers.RequestHandler2;
+
+// Redirects the SQS requests of the v1 SDK to the fake while it is running.
+// It is registered as a global request handler in
+// com/amazonaws/global/handlers/request.handler2s, which runs after the
+// handlers of the service that resolve the queue URL.
+public class FakeAwsRequestHandler extends RequestHandler2 {
+
+  private static final String SQS_SERVICE_NAME = "AmazonSQS";
+
+  @Override
+  public void beforeRequest(
+      Request<?> request) {
+
+    FakeAws fakeAws = FakeAws.getRunning();
+    if (fakeAws == null || !SQS_SERVICE_NAME.equals(request.getServiceName()))
+      return;
+
+    request.setEndpoint(URI.create("http://" + fakeAws.getHost() + ":" + fakeAws.getPort()));
+    request.addHeader(FakeAws.SERVICE_HEADER, FakeAws.SERVICE_SQS);
+  }
+}
@@ -0,0 +1,485 @@
+package testkit.aws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+// In-memory S3 which serves the subset of the REST API that the functions
+// use: PutObject, GetObject, HeadObject, CopyObject, ListObjectsV2 and
+// DeleteObjects. Every request is counted per operation.
+public class FakeS3 {
+
+  private static final String XML_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+  private static final String METADATA_HEADER_PREFIX = "x-amz-meta-";
+  private static final int MAX_KEYS = 1000;
+
+  private static final Pattern DELETE_KEY_PATTERN = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+  private static final Pattern DELETE_QUIET_PATTERN = Pattern.compile("<Quiet>\\s*true\\s*</Quiet>");
+
+  private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> callCounts = new ConcurrentHashMap<>();
+
+  // Buckets which reject every request, which the SDK does not retry
+  private final Set<String> deniedBuckets = ConcurrentHashMap.newKeySet();
+
+  FakeS3() {
+  }
+
+  public void putObject(
+      String bucketName,
+      String keyName,
+      StoredObject object) {
+    getBucket(bucketName).put(keyName, object);
+  }
+
+  // The same object under every key, the objects are immutable
+  public void putObjects(
+      String bucketName,
+      List<String> keyNames,
+      StoredObject object) {
+    for (String keyName : keyNames)
+      putObject(bucketName, keyName, object);
+  }
+
+  public StoredObject getObject(
+      String bucketName,
+      String keyName) {
+    return getBucket(bucketName).get(keyName);
+  }
+
+  public NavigableMap<String, StoredObject> getObjects(
+      String bucketName) {
+    return getBucket(bucketName);
+  }
+
+  public void denyAccess(
+      String bucketName) {
+    this.deniedBuckets.add(bucketName);
+  }
+
+  public int getCallCount(
+      String operation) {
+    AtomicInteger callCount = this.callCounts.get(operation);
+    return callCount != null ? callCount.get() : 0;
+  }
+
+  public int getCallCount() {
+    int callCount = 0;
+    for (AtomicInteger count : this.callCounts.values())
+      callCount += count.get();
+    return callCount;
+  }
+
+  public void reset() {
+    this.buckets.clear();
+    this.callCounts.clear();
+    this.deniedBuckets.clear();
+  }
+
+  public void resetCallCounts() {
+    this.callCounts.clear();
+  }
+
+  private NavigableMap<String, StoredObject> getBucket(
+      String bucketName) {
+    return this.buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+  }
+
+  void handle(
+      HttpExchange exchange,
+      String operation) throws IOException {
+
+    this.callCounts.computeIfAbsent(operation, name -> new AtomicInteger()).incrementAndGet();
+
+    // The requests are addressed in path style, /<bucket>/<key>
+    String path = exchange.getRequestURI().getPath();
+    int slash = path.indexOf('/', 1);
+    String bucketName = slash < 0 ? path.substring(1) : path.substring(1, slash);
+    String keyName = slash < 0 ? "" : path.substring(slash + 1);
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    Headers headers = exchange.getRequestHeaders();
+
+    if (this.deniedBuckets.contains(bucketName)) {
+      sendError(exchange, 403, "AccessDenied", "Access Denied", keyName);
+      return;
+    }
+
+    switch (exchange.getRequestMethod()) {
+      case "PUT":
+        if (headers.containsKey("x-amz-copy-source"))
+          copyObject(exchange, bucketName, keyName);
+        else
+          putObject(exchange, bucketName, keyName);
+        return;
+      case "GET":
+        if (keyName.isEmpty())
+          listObjectsV2(exchange, bucketName, query);
+        else
+          getObject(exchange, bucketName, keyName, true);
+        return;
+      case "HEAD":
+        getObject(exchange, bucketName, keyName, false);
+        return;
+      case "POST":
+        if (query.containsKey("delete")) {
+          deleteObjects(exchange, bucketName);
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+
+    sendError(exchange, 501, "NotImplemented", operation + " is not implemented by the fake S3.", keyName);
+  }
+
+  private void putObject(
+      HttpExchange exchange,
+      String bucketName,
+      String keyName) throws IOException {
+
+    Headers headers = exchange.getRequestHeaders();
+    byte[] content = readContent(exchange);
+
+    StoredObject object = new StoredObject(
+        content,
+        headers.getFirst("Content-Type"),
+        getContentEncoding(headers),
+        getMetadata(headers),
+        Instant.now());
+    getBucket(bucketName).put(keyName, object);
+
+    exchange.getResponseHeaders().set("ETag", object.getETag());
+    send(exchange, 200, null, null);
+  }
+
+  private void copyObject(
+      HttpExchange exchange,
+      String bucketName,
+      String keyName) throws IOException {
+
+    Headers headers = exchange.getRequestHeaders();
+    readContent(exchange);
+
+    // The copy source is "<bucket>/<url encoded key>" with an optional version
+    String copySource = headers.getFirst("x-amz-copy-source");
+    int versionIndex = copySource.indexOf('?');
+    if (versionIndex >= 0)
+      copySource = copySource.substring(0, versionIndex);
+    copySource = URLDecoder.decode(copySource, StandardCharsets.UTF_8);
+    if (copySource.startsWith("/"))
+      copySource = copySource.substring(1);
+
+    int slash = copySource.indexOf('/');
+    String sourceBucketName = copySource.substring(0, slash);
+    String sourceKeyName = copySource.substring(slash + 1);
+
+    StoredObject source = getBucket(sourceBucketName).get(sourceKeyName);
+    if (source == null) {
+      sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.", sourceKeyName);
+      return;
+    }
+
+    // The metadata and the content headers are either copied or replaced
+    boolean replace = "REPLACE".equalsIgnoreCase(headers.getFirst("x-amz-metadata-directive"));
+    StoredObject object = new StoredObject(
+        source.getContent(),
+        replace ? headers.getFirst("Content-Type") : source.getContentType(),
+        replace ? getContentEncoding(headers) : source.getContentEncoding(),
+        replace ? getMetadata(headers) : source.getMetadata(),
+        Instant.now());
+    getBucket(bucketName).put(keyName, object);
+
+    String body = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<CopyObjectResult xmlns=\"" + XML_NAMESPACE + "\">"
+        + "<LastModified>" + object.getLastModified() + "</LastModified>"
+        + "<ETag>" + escapeXml(object.getETag()) + "</ETag>"
+        + "</CopyObjectResult>";
+    send(exchange, 200, "application/xml", body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void getObject(
+      HttpExchange exchange,
+      String bucketName,
+      String keyName,
+      boolean withContent) throws IOException {
+
+    readContent(exchange);
+
+    StoredObject object = getBucket(bucketName).get(keyName);
+    if (object == null) {
+      if (withContent)
+        sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.", keyName);
+      else
+        send(exchange, 404, null, null);
+      return;
+    }
+
+    Headers responseHeaders = exchange.getResponseHeaders();
+    responseHeaders.set("ETag", object.getETag());
+    responseHeaders.set("Last-Modified",
+        DateTimeFormatter.RFC_1123_DATE_TIME.format(object.getLastModified().atOffset(ZoneOffset.UTC)));
+    if (object.getContentEncoding() != null)
+      responseHeaders.set("Content-Encoding", object.getContentEncoding());
+    for (Map.Entry<String, String> entry : object.getMetadata().entrySet())
+      responseHeaders.set(METADATA_HEADER_PREFIX + entry.getKey(), entry.getValue());
+
+    String contentType = object.getContentType() != null ? object.getContentType() : "binary/octet-stream";
+    send(exchange, 200, contentType, withContent ? object.getContent() : null);
+  }
+
+  private void listObjectsV2(
+      HttpExchange exchange,
+      String bucketName,
+      Map<String, String> query) throws IOException {
+
+    readContent(exchange);
+
+    String prefix = query.getOrDefault("prefix", "");
+    String continuationToken = query.get("continuation-token");
+    String startAfter = continuationToken != null ? continuationToken : query.get("start-after");
+    int maxKeys = query.containsKey("max-keys")
+        ? Math.min(Integer.parseInt(query.get("max-keys")), MAX_KEYS)
+        : MAX_KEYS;
+
+    NavigableMap<String, StoredObject> bucket = getBucket(bucketName);
+    NavigableMap<String, StoredObject> candidates = startAfter != null
+        ? bucket.tailMap(startAfter, false)
+        : bucket;
+
+    StringBuilder contents = new StringBuilder();
+    int keyCount = 0;
+    String lastKeyName = null;
+    boolean isTruncated = false;
+    for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+      if (!entry.getKey().startsWith(prefix))
+        continue;
+
+      if (keyCount == maxKeys) {
+        isTruncated = true;
+        break;
+      }
+
+      StoredObject object = entry.getValue();
+      contents.append("<Contents>")
+          .append("<Key>").append(escapeXml(entry.getKey())).append("</Key>")
+          .append("<LastModified>").append(object.getLastModified()).append("</LastModified>")
+          .append("<ETag>").append(escapeXml(object.getETag())).append("</ETag>")
+          .append("<Size>").append(object.getContent().length).append("</Size>")
+          .append("<StorageClass>STANDARD</StorageClass>")
+          .append("</Contents>");
+      keyCount++;
+      lastKeyName = entry.getKey();
+    }
+
+    StringBuilder body = new StringBuilder()
+        .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+        .append("<ListBucketResult xmlns=\"").append(XML_NAMESPACE).append("\">")
+        .append("<Name>").append(escapeXml(bucketName)).append("</Name>")
+        .append("<Prefix>").append(escapeXml(prefix)).append("</Prefix>")
+        .append("<KeyCount>").append(keyCount).append("</KeyCount>")
+        .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+        .append("<IsTruncated>").append(isTruncated).append("</IsTruncated>");
+    if (continuationToken != null)
+      body.append("<ContinuationToken>").append(escapeXml(continuationToken)).append("</ContinuationToken>");
+    if (isTruncated)
+      body.append("<NextContinuationToken>").append(escapeXml(lastKeyName)).append("</NextContinuationToken>");
+    body.append(contents).append("</ListBucketResult>");
+
+    send(exchange, 200, "application/xml", body.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void deleteObjects(
+      HttpExchange exchange,
+      String bucketName) throws IOException {
+
+    String request = new String(readContent(exchange), StandardCharsets.UTF_8);
+    boolean quiet = DELETE_QUIET_PATTERN.matcher(request).find();
+
+    NavigableMap<String, StoredObject> bucket = getBucket(bucketName);
+    StringBuilder body = new StringBuilder()
+        .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+        .append("<DeleteResult xmlns=\"").append(XML_NAMESPACE).append("\">");
+
+    // Deleting a missing key succeeds like in S3
+    Matcher matcher = DELETE_KEY_PATTERN.matcher(request);
+    while (matcher.find()) {
+      String keyName = unescapeXml(matcher.group(1));
+      bucket.remove(keyName);
+      if (!quiet)
+        body.append("<Deleted><Key>").append(escapeXml(keyName)).append("</Key></Deleted>");
+    }
+    body.append("</DeleteResult>");
+
+    send(exchange, 200, "application/xml", body.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private byte[] readContent(
+      HttpExchange exchange) throws IOException {
+
+    byte[] content;
+    try (InputStream inputStream = exchange.getRequestBody()) {
+      content = inputStream.readAllBytes();
+    }
+
+    // Payloads which are signed over plain HTTP are sent in signed chunks
+    String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+    if (contentSha256 != null && contentSha256.startsWith("STREAMING-"))
+      return decodeAwsChunked(content);
+    return content;
+  }
+
+  // Decodes "<hex size>;chunk-signature=<signature>\r\n<data>\r\n" chunks
+  // until the final chunk of size zero
+  private byte[] decodeAwsChunked(
+      byte[] content) {
+
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream(content.length);
+    int position = 0;
+    while (position < content.length) {
+      int lineEnd = indexOfLineEnd(content, position);
+      String header = new String(content, position, lineEnd - position, StandardCharsets.US_ASCII);
+      int separator = header.indexOf(';');
+      int size = Integer.parseInt(separator >= 0 ? header.substring(0, separator) : header, 16);
+      if (size == 0)
+        break;
+
+      position = lineEnd + 2;
+      decoded.write(content, position, size);
+      position += size + 2;
+    }
+    return decoded.toByteArray();
+  }
+
+  private int indexOfLineEnd(
+      byte[] content,
+      int from) {
+    for (int i = from; i < content.length - 1; i++)
+      if (content[i] == '\r' && content[i + 1] == '\n')
+        return i;
+    return content.length;
+  }
+
+  private String getContentEncoding(
+      Headers headers) {
+
+    // The chunked transfer of the payload is no content encoding of the object
+    String contentEncoding = headers.getFirst("Content-Encoding");
+    if (contentEncoding == null)
+      return null;
+
+    StringBuilder encodings = new StringBuilder();
+    for (String encoding : contentEncoding.split(",")) {
+      if (encoding.isBlank() || encoding.trim().equals("aws-chunked"))
+        continue;
+      if (encodings.length() > 0)
+        encodings.append(",");
+      encodings.append(encoding.trim());
+    }
+    return encodings.length() > 0 ? encodings.toString() : null;
+  }
+
+  private Map<String, String> getMetadata(
+      Headers headers) {
+
+    Map<String, String> metadata = new HashMap<>();
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      String name = header.getKey().toLowerCase();
+      if (name.startsWith(METADATA_HEADER_PREFIX))
+        metadata.put(name.substring(METADATA_HEADER_PREFIX.length()), header.getValue().get(0));
+    }
+    return metadata;
+  }
+
+  private Map<String, String> parseQuery(
+      String rawQuery) {
+
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null || rawQuery.isEmpty())
+      return query;
+
+    for (String parameter : rawQuery.split("&")) {
+      int separator = parameter.indexOf('=');
+      String name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+      String value = separator >= 0 ? parameter.substring(separator + 1) : "";
+      query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return query;
+  }
+
+  private void sendError(
+      HttpExchange exchange,
+      int statusCode,
+      String code,
+      String message,
+      String keyName) throws IOException {
+
+    String body = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<Error>"
+        + "<Code>" + code + "</Code>"
+        + "<Message>" + escapeXml(message) + "</Message>"
+        + "<Key>" + escapeXml(keyName) + "</Key>"
+        + "<RequestId>" + UUID.randomUUID() + "</RequestId>"
+        + "</Error>";
+    send(exchange, statusCode, "application/xml", body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void send(
+      HttpExchange exchange,
+      int statusCode,
+      String contentType,
+      byte[] body) throws IOException {
+
+    Headers responseHeaders = exchange.getResponseHeaders();
+    responseHeaders.set("x-amz-request-id", UUID.randomUUID().toString());
+    if (contentType != null)
+      responseHeaders.set("Content-Type", contentType);
+
+    if (body == null || body.length == 0) {
+      exchange.sendResponseHeaders(statusCode, -1);
+    } else {
+      exchange.sendResponseHeaders(statusCode, body.length);
+      exchange.getResponseBody().write(body);
+    }
+    exchange.close();
+  }
+
+  static String escapeXml(
+      String value) {
+    return value
+        .replace("&", "&amp;")
+        .replace("<", "&lt;")
+        .replace(">", "&gt;")
+        .replace("\"", "&quot;")
+        .replace("'", "&apos;");
+  }
+
+  private static String unescapeXml(
+      String value) {
+    return value
+        .replace("&lt;", "<")
+        .replace("&gt;", ">")
+        .replace("&quot;", "\"")
+        .replace("&apos;", "'")
+        .replace("&amp;", "&");
+  }
+}
@@ -0,0 +1,174 @@
+package testkit.aws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpExchange;
+
+// In-memory SQS which accepts the SendMessage requests of the query protocol
+// which the v1 SDK uses. The SDK validates the MD5 digests of the body and
+// the message attributes, so they are computed like SQS does.
+public class FakeSqs {
+
+  private static final String XML_NAMESPACE = "http://queue.amazonaws.com/doc/2012-11-05/";
+
+  private static final byte STRING_TYPE_FIELD_INDEX = 1;
+  private static final byte BINARY_TYPE_FIELD_INDEX = 2;
+
+  private final List<SentMessage> sentMessages = new CopyOnWriteArrayList<>();
+
+  FakeSqs() {
+  }
+
+  public List<SentMessage> getSentMessages() {
+    return Collections.unmodifiableList(this.sentMessages);
+  }
+
+  public int getCallCount() {
+    return this.sentMessages.size();
+  }
+
+  public void reset() {
+    this.sentMessages.clear();
+  }
+
+  void handle(
+      HttpExchange exchange) throws IOException {
+
+    Map<String, String> parameters;
+    try (InputStream inputStream = exchange.getRequestBody()) {
+      parameters = parseForm(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    if (!"SendMessage".equals(parameters.get("Action"))) {
+      send(exchange, 400, "<ErrorResponse><Error><Type>Sender</Type><Code>InvalidAction</Code>"
+          + "<Message>" + parameters.get("Action") + " is not implemented by the fake SQS.</Message>"
+          + "</Error></ErrorResponse>");
+      return;
+    }
+
+    String body = parameters.get("MessageBody");
+    Map<String, MessageAttribute> messageAttributes = getMessageAttributes(parameters);
+
+    Map<String, String> messageAttributeValues = new HashMap<>();
+    for (Map.Entry<String, MessageAttribute> entry : messageAttributes.entrySet())
+      messageAttributeValues.put(entry.getKey(), entry.getValue().stringValue);
+
+    String messageId = UUID.randomUUID().toString();
+    this.sentMessages.add(new SentMessage(
+        messageId,
+        parameters.get("QueueUrl"),
+        parameters.get("MessageGroupId"),
+        body,
+        messageAttributeValues));
+
+    StringBuilder response = new StringBuilder()
+        .append("<SendMessageResponse xmlns=\"").append(XML_NAMESPACE).append("\">")
+        .append("<SendMessageResult>")
+        .append("<MD5OfMessageBody>").append(StoredObject.md5Hex(body.getBytes(StandardCharsets.UTF_8)))
+        .append("</MD5OfMessageBody>");
+    if (!messageAttributes.isEmpty())
+      response.append("<MD5OfMessageAttributes>").append(getMessageAttributesMd5(messageAttributes))
+          .append("</MD5OfMessageAttributes>");
+    response.append("<MessageId>").append(messageId).append("</MessageId>")
+        .append("</SendMessageResult>")
+        .append("<ResponseMetadata><RequestId>").append(UUID.randomUUID()).append("</RequestId></ResponseMetadata>")
+        .append("</SendMessageResponse>");
+
+    send(exchange, 200, response.toString());
+  }
+
+  // Message attributes are sent as MessageAttribute.<n>.Name,
+  // MessageAttribute.<n>.Value.DataType and MessageAttribute.<n>.Value.StringValue
+  // or MessageAttribute.<n>.Value.BinaryValue
+  private Map<String, MessageAttribute> getMessageAttributes(
+      Map<String, String> parameters) {
+
+    Map<String, MessageAttribute> messageAttributes = new TreeMap<>();
+    for (int i = 1; parameters.containsKey("MessageAttribute." + i + ".Name"); i++) {
+      String prefix = "MessageAttribute." + i + ".";
+      String binaryValue = parameters.get(prefix + "Value.BinaryValue");
+
+      MessageAttribute messageAttribute = new MessageAttribute();
+      messageAttribute.dataType = parameters.get(prefix + "Value.DataType");
+      messageAttribute.stringValue = parameters.get(prefix + "Value.StringValue");
+      messageAttribute.binaryValue = binaryValue != null ? Base64.getDecoder().decode(binaryValue) : null;
+      messageAttributes.put(parameters.get(prefix + "Name"), messageAttribute);
+    }
+    return messageAttributes;
+  }
+
+  // Digest over the length prefixed name, data type and value of every
+  // attribute in the order of the names
+  private String getMessageAttributesMd5(
+      Map<String, MessageAttribute> messageAttributes) {
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (Map.Entry<String, MessageAttribute> entry : messageAttributes.entrySet()) {
+      MessageAttribute messageAttribute = entry.getValue();
+      writeLengthAndBytes(bytes, entry.getKey().getBytes(StandardCharsets.UTF_8));
+      writeLengthAndBytes(bytes, messageAttribute.dataType.getBytes(StandardCharsets.UTF_8));
+      if (messageAttribute.stringValue != null) {
+        bytes.write(STRING_TYPE_FIELD_INDEX);
+        writeLengthAndBytes(bytes, messageAttribute.stringValue.getBytes(StandardCharsets.UTF_8));
+      } else if (messageAttribute.binaryValue != null) {
+        bytes.write(BINARY_TYPE_FIELD_INDEX);
+        writeLengthAndBytes(bytes, messageAttribute.binaryValue);
+      }
+    }
+    return StoredObject.md5Hex(bytes.toByteArray());
+  }
+
+  private void writeLengthAndBytes(
+      ByteArrayOutputStream bytes,
+      byte[] value) {
+    bytes.writeBytes(ByteBuffer.allocate(4).putInt(value.length).array());
+    bytes.writeBytes(value);
+  }
+
+  private Map<String, String> parseForm(
+      String form) {
+
+    Map<String, String> parameters = new HashMap<>();
+    for (String parameter : form.split("&")) {
+      if (parameter.isEmpty())
+        continue;
+      int separator = parameter.indexOf('=');
+      String name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+      String value = separator >= 0 ? parameter.substring(separator + 1) : "";
+      parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+
+  private void send(
+      HttpExchange exchange,
+      int statusCode,
+      String body) throws IOException {
+
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/xml");
+    exchange.getResponseHeaders().set("x-amzn-RequestId", UUID.randomUUID().toString());
+    exchange.sendResponseHeaders(statusCode, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+
+  private static class MessageAttribute {
+    private String dataType;
+    private String stringValue;
+    private byte[] binaryValue;
+  }
+}
@@ -0,0 +1,48 @@
+package testkit.aws;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SentMessage {
+
+  private final String messageId;
+  private final String queueUrl;
+  private final String messageGroupId;
+  private final String body;
+  private final Map<String, String> messageAttributes;
+
+  SentMessage(
+      String messageId,
+      String queueUrl,
+      String messageGroupId,
+      String body,
+      Map<String, String> messageAttributes) {
+    this.messageId = messageId;
+    this.queueUrl = queueUrl;
+    this.messageGroupId = messageGroupId;
+    this.body = body;
+    this.messageAttributes = Collections.unmodifiableMap(new HashMap<>(messageAttributes));
+  }
+
+  public String getMessageId() {
+    return this.messageId;
+  }
+
+  public String getQueueUrl() {
+    return this.queueUrl;
+  }
+
+  public String getMessageGroupId() {
+    return this.messageGroupId;
+  }
+
+  public String getBody() {
+    return this.body;
+  }
+
+  // String values of the message attributes, such as the trace context
+  public Map<String, String> getMessageAttributes() {
+    return this.messageAttributes;
+  }
+}
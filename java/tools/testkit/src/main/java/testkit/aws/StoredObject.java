@@ -0,0 +1,107 @@
+package testkit.aws;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StoredObject {
+
+  private final byte[] content;
+  private final String contentType;
+  private final String contentEncoding;
+  private final Map<String, String> metadata;
+  private final Instant lastModified;
+  private final String eTag;
+
+  public StoredObject(
+      byte[] content,
+      String contentType,
+      String contentEncoding,
+      Map<String, String> metadata,
+      Instant lastModified) {
+    this.content = content;
+    this.contentType = contentType;
+    this.contentEncoding = contentEncoding;
+    this.metadata = Collections.unmodifiableMap(new HashMap<>(metadata));
+    this.lastModified = lastModified.truncatedTo(ChronoUnit.MILLIS);
+
+    // The SDK validates the content against the ETag of single part objects
+    this.eTag = "\"" + md5Hex(content) + "\"";
+  }
+
+  public static StoredObject ofJson(
+      String json) {
+    return ofJson(json, null);
+  }
+
+  // The JSON encoded like a storage codec of the functions encodes it
+  public static StoredObject ofJson(
+      String json,
+      String contentEncoding) {
+    byte[] content = ContentEncodings.encode(json.getBytes(StandardCharsets.UTF_8), contentEncoding);
+    return new StoredObject(content, "application/json", contentEncoding, Map.of(), Instant.now());
+  }
+
+  public static StoredObject ofText(
+      String text) {
+    return new StoredObject(text.getBytes(StandardCharsets.UTF_8), "text/plain", null, Map.of(), Instant.now());
+  }
+
+  public StoredObject withMetadata(
+      Map<String, String> metadata) {
+    return new StoredObject(this.content, this.contentType, this.contentEncoding, metadata, this.lastModified);
+  }
+
+  public StoredObject withLastModified(
+      Instant lastModified) {
+    return new StoredObject(this.content, this.contentType, this.contentEncoding, this.metadata, lastModified);
+  }
+
+  public byte[] getContent() {
+    return this.content;
+  }
+
+  public String getContentAsString() {
+    return new String(this.content, StandardCharsets.UTF_8);
+  }
+
+  public String getDecodedContentAsString() {
+    return new String(ContentEncodings.decode(this.content, this.contentEncoding), StandardCharsets.UTF_8);
+  }
+
+  public String getContentType() {
+    return this.contentType;
+  }
+
+  public String getContentEncoding() {
+    return this.contentEncoding;
+  }
+
+  public Map<String, String> getMetadata() {
+    return this.metadata;
+  }
+
+  public Instant getLastModified() {
+    return this.lastModified;
+  }
+
+  public String getETag() {
+    return this.eTag;
+  }
+
+  static String md5Hex(
+      byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(bytes);
+      return String.format("%032x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}